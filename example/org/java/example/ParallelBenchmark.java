@@ -0,0 +1,129 @@
+package org.java.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.Decoder;
+import org.json.Encoder;
+import org.json.JSONAttribute;
+import org.json.JSONException;
+import org.json.JSONIterator;
+import org.json.JSONSerializable;
+import org.json.ParallelDecoder;
+
+/**
+ * Measures how the throughput of the {@code ParallelDecoder} scales with the
+ * amount of threads, for JSON Lines and for one large array. The first argument is the amount of records, which
+ * defaults to one million.
+ */
+public class ParallelBenchmark {
+	
+	public static class Event implements JSONSerializable {
+		@JSONAttribute public long id;
+		@JSONAttribute public String type;
+		@JSONAttribute public String user;
+		@JSONAttribute public double latitude;
+		@JSONAttribute public double longitude;
+		@JSONAttribute public boolean processed;
+	}
+	
+	private static final int RUNS = 5;
+	
+	public static void main(String[] args) throws IOException, JSONException {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Encoder.encodeLines(out, new AbstractList<Event>() {
+			@Override
+			public Event get(int i) {
+				Event event = new Event();
+				event.id = i;
+				event.type = i % 3 == 0 ? "click" : "view";
+				event.user = "user" + (i % 1000);
+				event.latitude = 52.0 + i * 1e-6;
+				event.longitude = 4.3 - i * 1e-6;
+				event.processed = i % 2 == 0;
+				return event;
+			}
+			@Override
+			public int size() {
+				return count;
+			}
+		});
+		byte[] input = out.toByteArray();
+		System.out.printf("%d records, %.1f MB%n", count, input.length / 1e6);
+		
+		double sequential = best(input, 0, false);
+		System.out.printf("sequential         %8.1f MB/s%n", sequential);
+		int processors = Runtime.getRuntime().availableProcessors();
+		for(int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+			double ordered = best(input, threads, true);
+			double unordered = best(input, threads, false);
+			double array = bestArray(array(input), threads);
+			System.out.printf("%3d threads ordered %7.1f MB/s, unordered %7.1f MB/s (%.1fx), array %7.1f MB/s%n",
+					threads, ordered, unordered, unordered / sequential, array);
+			if(threads == processors) break;
+		}
+	}
+	
+	/**
+	 * @param threads the amount of threads, or 0 to decode on this thread
+	 * @return the best throughput of a few runs in MB/s
+	 */
+	private static double best(byte[] input, int threads, boolean ordered) throws IOException {
+		long best = Long.MAX_VALUE;
+		for(int run = 0; run < RUNS; run++) {
+			final AtomicLong sum = new AtomicLong();
+			long start = System.nanoTime();
+			if(threads == 0) {
+				JSONIterator<Event> events = Decoder.lines(Event.class, new ByteArrayInputStream(input));
+				while(events.hasNext())
+					sum.addAndGet(events.next().id);
+			} else {
+				ParallelDecoder<Event> decoder = new ParallelDecoder<Event>(Event.class);
+				decoder.setThreads(threads);
+				decoder.setOrdered(ordered);
+				decoder.decode(new ByteArrayInputStream(input), new ParallelDecoder.Handler<Event>() {
+					@Override
+					public void handle(Event event) {
+						sum.addAndGet(event.id);
+					}
+				});
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return input.length / 1e6 / (best / 1e9);
+	}
+	
+	/**
+	 * @return the records of a JSON Lines input as one JSON array
+	 */
+	private static byte[] array(byte[] lines) {
+		byte[] array = new byte[lines.length + 1];
+		array[0] = '[';
+		System.arraycopy(lines, 0, array, 1, lines.length);
+		// Replace the line breaks by commas, and the last one by a bracket
+		for(int i = 1; i < array.length; i++)
+			if(array[i] == '\n') array[i] = ',';
+		array[array.length - 1] = ']';
+		return array;
+	}
+	
+	/**
+	 * @return the best throughput of decoding one array in MB/s
+	 */
+	private static double bestArray(byte[] input, int threads) throws IOException {
+		long best = Long.MAX_VALUE;
+		ParallelDecoder<Event> decoder = new ParallelDecoder<Event>(Event.class);
+		decoder.setThreads(threads);
+		for(int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			decoder.decodeArray(input, 0, input.length);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return input.length / 1e6 / (best / 1e9);
+	}
+	
+}
@@ -0,0 +1,402 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer, used to generate codec classes at runtime.
+ * It only supports what the {@link GeneratedCodec} needs: a public final
+ * class with static methods. Classes are written in the Java 5 class file
+ * format, which is verified by type inference, so no stack map frames have
+ * to be computed.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+final class Bytecode {
+	
+	/*
+	 * The opcodes used by the codec generator
+	 */
+	final static int ACONST_NULL = 0x01;
+	final static int SIPUSH = 0x11;
+	final static int LDC_W = 0x13;
+	final static int ILOAD_3 = 0x1d;
+	final static int ALOAD_0 = 0x2a;
+	final static int ALOAD_1 = 0x2b;
+	final static int ALOAD_2 = 0x2c;
+	final static int ALOAD_3 = 0x2d;
+	final static int ISTORE_3 = 0x3e;
+	final static int ASTORE_2 = 0x4d;
+	final static int ASTORE_3 = 0x4e;
+	final static int POP = 0x57;
+	final static int POP2 = 0x58;
+	final static int DUP = 0x59;
+	final static int SWAP = 0x5f;
+	final static int I2L = 0x85;
+	final static int IFEQ = 0x99;
+	final static int IF_ACMPNE = 0xa6;
+	final static int GOTO = 0xa7;
+	final static int LOOKUPSWITCH = 0xab;
+	final static int ARETURN = 0xb0;
+	final static int RETURN = 0xb1;
+	final static int GETSTATIC = 0xb2;
+	final static int GETFIELD = 0xb4;
+	final static int PUTFIELD = 0xb5;
+	final static int INVOKEVIRTUAL = 0xb6;
+	final static int INVOKESPECIAL = 0xb7;
+	final static int INVOKESTATIC = 0xb8;
+	final static int NEW = 0xbb;
+	final static int CHECKCAST = 0xc0;
+	
+	private final static int ACC_PUBLIC = 0x0001;
+	private final static int ACC_STATIC = 0x0008;
+	private final static int ACC_FINAL = 0x0010;
+	private final static int ACC_SUPER = 0x0020;
+	
+	/*
+	 * Constant pool tags
+	 */
+	private final static int CONSTANT_UTF8 = 1;
+	private final static int CONSTANT_CLASS = 7;
+	private final static int CONSTANT_STRING = 8;
+	private final static int CONSTANT_FIELDREF = 9;
+	private final static int CONSTANT_METHODREF = 10;
+	private final static int CONSTANT_NAME_AND_TYPE = 12;
+	
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(pool);
+	private final Map<String, Integer> constants = new HashMap<String, Integer>();
+	private int poolSize = 1;
+	
+	private final List<byte[]> methods = new ArrayList<byte[]>();
+	private final int thisClass;
+	private final int superClass;
+	
+	/**
+	 * Construct a new class
+	 * @param name the internal name of the class, like {@code com/example/Foo}
+	 */
+	Bytecode(String name) {
+		this.thisClass = classRef(name);
+		this.superClass = classRef("java/lang/Object");
+	}
+	
+	int utf8(String value) {
+		String key = "U" + value;
+		Integer index = constants.get(key);
+		if(index != null) return index;
+		try {
+			poolOut.writeByte(CONSTANT_UTF8);
+			poolOut.writeUTF(value);
+		} catch ( IOException e ) {
+			// Constants longer than 65535 bytes
+			throw new JSONException(e);
+		}
+		return add(key);
+	}
+	
+	int classRef(String internalName) {
+		return constant("C" + internalName, CONSTANT_CLASS, utf8(internalName), -1);
+	}
+	
+	int string(String value) {
+		return constant("S" + value, CONSTANT_STRING, utf8(value), -1);
+	}
+	
+	int fieldRef(String owner, String name, String descriptor) {
+		return constant("F" + owner + '.' + name + ':' + descriptor, CONSTANT_FIELDREF,
+				classRef(owner), nameAndType(name, descriptor));
+	}
+	
+	int methodRef(String owner, String name, String descriptor) {
+		return constant("M" + owner + '.' + name + descriptor, CONSTANT_METHODREF,
+				classRef(owner), nameAndType(name, descriptor));
+	}
+	
+	private int nameAndType(String name, String descriptor) {
+		return constant("N" + name + ':' + descriptor, CONSTANT_NAME_AND_TYPE,
+				utf8(name), utf8(descriptor));
+	}
+	
+	/**
+	 * Add a constant that refers to one or two other constants
+	 */
+	private int constant(String key, int tag, int first, int second) {
+		Integer index = constants.get(key);
+		if(index != null) return index;
+		try {
+			poolOut.writeByte(tag);
+			poolOut.writeShort(first);
+			if(second >= 0) poolOut.writeShort(second);
+		} catch ( IOException e ) {
+			throw new JSONException(e);
+		}
+		return add(key);
+	}
+	
+	private int add(String key) {
+		int index = poolSize++;
+		if(index > 0xFFFF) throw new JSONException("Too many constants");
+		constants.put(key, index);
+		return index;
+	}
+	
+	/**
+	 * Start a new public static method
+	 * @param name the method name
+	 * @param descriptor the method descriptor
+	 * @param maxStack the maximum depth of the operand stack
+	 * @param maxLocals the amount of local variables, including parameters
+	 * @return the code of the method, which should be ended with
+	 *         {@link Code#end()}
+	 */
+	Code method(String name, String descriptor, int maxStack, int maxLocals) {
+		return new Code(utf8(name), utf8(descriptor), maxStack, maxLocals);
+	}
+	
+	/**
+	 * @return the class file
+	 */
+	byte[] toByteArray() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(pool.size() + 1024);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			// Java 5
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(poolSize);
+			pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			// No interfaces and fields
+			out.writeShort(0);
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for(byte[] method : methods)
+				out.write(method);
+			// No class attributes
+			out.writeShort(0);
+			return bytes.toByteArray();
+		} catch ( IOException e ) {
+			// Unlikely to ever happen since we're writing to memory
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * A jump target in the code of a method
+	 */
+	static final class Label {
+		
+		private int position = -1;
+		
+		/**
+		 * The position of the jump instruction, the position of its offset and
+		 * the width of the offset, for jumps written before the label was
+		 * marked
+		 */
+		private final List<int[]> references = new ArrayList<int[]>();
+		
+	}
+	
+	/**
+	 * The code of a method under construction
+	 */
+	final class Code {
+		
+		private final int name;
+		private final int descriptor;
+		private final int maxStack;
+		private final int maxLocals;
+		
+		private byte[] code = new byte[256];
+		private int length = 0;
+		
+		private Code(int name, int descriptor, int maxStack, int maxLocals) {
+			this.name = name;
+			this.descriptor = descriptor;
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+		
+		/**
+		 * Write an instruction without operands
+		 * @param opcode the opcode
+		 * @return this code
+		 */
+		Code op(int opcode) {
+			u1(opcode);
+			return this;
+		}
+		
+		/**
+		 * Write an instruction with a constant pool index as operand
+		 * @param opcode the opcode
+		 * @param index the constant pool index
+		 * @return this code
+		 */
+		Code op(int opcode, int index) {
+			u1(opcode);
+			u2(index);
+			return this;
+		}
+		
+		/**
+		 * Push a small int constant
+		 * @param value the value, which fits in a short
+		 * @return this code
+		 */
+		Code push(int value) {
+			if(value != (short) value) throw new JSONException("Constant too large");
+			u1(SIPUSH);
+			u2(value);
+			return this;
+		}
+		
+		/**
+		 * Write a jump instruction
+		 * @param opcode the opcode
+		 * @param target the label to jump to
+		 * @return this code
+		 */
+		Code jump(int opcode, Label target) {
+			int position = length;
+			u1(opcode);
+			offset(position, target, 2);
+			return this;
+		}
+		
+		/**
+		 * Write a lookupswitch instruction
+		 * @param keys the keys, in ascending order
+		 * @param targets the label to jump to for every key
+		 * @param defaultTarget the label to jump to for other values
+		 * @return this code
+		 */
+		Code lookupswitch(int[] keys, Label[] targets, Label defaultTarget) {
+			int position = length;
+			u1(LOOKUPSWITCH);
+			// Operands are aligned to four bytes from the start of the code
+			while(length % 4 != 0) u1(0);
+			offset(position, defaultTarget, 4);
+			u4(keys.length);
+			for(int i = 0; i < keys.length; i++) {
+				u4(keys[i]);
+				offset(position, targets[i], 4);
+			}
+			return this;
+		}
+		
+		/**
+		 * Bind a label to the current position
+		 * @param label the label
+		 * @return this code
+		 */
+		Code mark(Label label) {
+			label.position = length;
+			for(int[] reference : label.references)
+				patch(reference[1], length - reference[0], reference[2]);
+			label.references.clear();
+			return this;
+		}
+		
+		/**
+		 * Add the method to the class
+		 */
+		void end() {
+			if(length > 0xFFFF) throw new JSONException("Method too large");
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(length + 32);
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeShort(ACC_PUBLIC | ACC_STATIC);
+				out.writeShort(name);
+				out.writeShort(descriptor);
+				out.writeShort(1);
+				out.writeShort(utf8("Code"));
+				out.writeInt(12 + length);
+				out.writeShort(maxStack);
+				out.writeShort(maxLocals);
+				out.writeInt(length);
+				out.write(code, 0, length);
+				// No exception table and code attributes
+				out.writeShort(0);
+				out.writeShort(0);
+				methods.add(bytes.toByteArray());
+			} catch ( IOException e ) {
+				throw new JSONException(e);
+			}
+		}
+		
+		private void offset(int instruction, Label target, int width) {
+			int position = length;
+			if(width == 2) u2(0);
+			else u4(0);
+			if(target.position >= 0) {
+				patch(position, target.position - instruction, width);
+			} else {
+				target.references.add(new int[] { instruction, position, width });
+			}
+		}
+		
+		private void patch(int position, int offset, int width) {
+			if(width == 2) {
+				if(offset != (short) offset) throw new JSONException("Jump offset too large");
+				code[position] = (byte) (offset >> 8);
+				code[position + 1] = (byte) offset;
+			} else {
+				code[position] = (byte) (offset >> 24);
+				code[position + 1] = (byte) (offset >> 16);
+				code[position + 2] = (byte) (offset >> 8);
+				code[position + 3] = (byte) offset;
+			}
+		}
+		
+		private void u1(int value) {
+			if(length == code.length) code = Arrays.copyOf(code, length * 2);
+			code[length++] = (byte) value;
+		}
+		
+		private void u2(int value) {
+			u1(value >> 8);
+			u1(value);
+		}
+		
+		private void u4(int value) {
+			u2(value >> 16);
+			u2(value);
+		}
+	}
+	
+}
@@ -0,0 +1,610 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@code ClassBinding} is the binding plan for a {@code JSONSerializable}
+ * class. It holds the annotated constructors and fields of the class, which
+ * are looked up through reflection only once. Bindings are immutable and
+ * cached in a {@code ClassValue}, so they can be shared between threads and
+ * do not prevent classes from being unloaded.
+ * <p>
+ * The annotated fields and getter and setter methods are turned into
+ * {@link Property properties}, which access the object through method
+ * handles. Every attribute name that can be bound, either to a property or
+ * to a constructor parameter, is assigned a {@link Slot}. The {@code Decoder}
+ * uses these slots to collect the values of an object while it is parsed.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+final class ClassBinding<T> {
+	
+	private final static String EMPTY_STRING = "";
+	
+	private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	
+	private static final ClassValue<ClassBinding<?>> BINDINGS = new ClassValue<ClassBinding<?>>() {
+		@Override
+		protected ClassBinding<?> computeValue(Class<?> type) {
+			return new ClassBinding<Object>(type);
+		}
+	};
+	
+	final Class<T> klass;
+	
+	/**
+	 * Constructors of which all parameters have the {@code JSONAttribute}
+	 * annotation, the one with the most parameters first
+	 */
+	final Creator<T>[] creators;
+	
+	/**
+	 * Constructor used when the class has no public constructors
+	 */
+	final Constructor<T> defaultConstructor;
+	
+	/**
+	 * The fields that have the {@code JSONAttribute} annotation in
+	 * declaration order, followed by the annotated getter and setter methods
+	 * ordered by attribute name
+	 */
+	final Property[] properties;
+	
+	/**
+	 * The slots for the attribute names that can be bound
+	 */
+	private final Map<String, Slot> slots = new HashMap<String, Slot>();
+	private final Slot[] slotsByIndex;
+	
+	/**
+	 * The attribute names that can be bound, by slot index
+	 */
+	final NameTable names;
+	
+	/**
+	 * The slot of the attribute that is expected first, and for every slot
+	 * the slot of the attribute that is expected next, in the order in
+	 * which the {@code Encoder} writes them. The value is -1 if no
+	 * attribute is expected.
+	 */
+	final int firstSlot;
+	private final int[] nextSlots;
+	
+	/**
+	 * True if the object can only be instantiated after its attributes are
+	 * parsed, because a constructor takes attributes as parameters
+	 */
+	final boolean buffered;
+	
+	/**
+	 * True if any of the writable properties is required
+	 */
+	final boolean hasRequired;
+	
+	/**
+	 * Construct a new ClassBinding
+	 * @param klass the class
+	 */
+	@SuppressWarnings("unchecked")
+	private ClassBinding(Class<?> klass) {
+		this.klass = (Class<T>) klass;
+		
+		boolean hasRequired = false;
+		List<Property> properties = new ArrayList<Property>();
+		for (Field f : klass.getDeclaredFields()) {
+			JSONAttribute annotation = f.getAnnotation(JSONAttribute.class);
+			if (annotation != null) {
+				hasRequired |= addProperty(properties, Property.of(f, annotation, this));
+			}
+		}
+		// Getters and setters for the same attribute form a single property.
+		// Methods are not returned in declaration order, so sort them by name.
+		Map<String, Method[]> accessors = new TreeMap<String, Method[]>();
+		for (Method m : klass.getDeclaredMethods()) {
+			JSONAttribute annotation = m.getAnnotation(JSONAttribute.class);
+			// Bridge methods carry the annotations of the methods they bridge to
+			if (annotation != null && !m.isBridge()) {
+				boolean setter = isSetter(m);
+				String name = annotation.name();
+				if(name.equals(EMPTY_STRING)) name = attributeName(m, setter);
+				Method[] pair = accessors.get(name);
+				if(pair == null) accessors.put(name, pair = new Method[2]);
+				pair[setter ? 1 : 0] = m;
+			}
+		}
+		for (Map.Entry<String, Method[]> entry : accessors.entrySet()) {
+			Method[] pair = entry.getValue();
+			hasRequired |= addProperty(properties, Property.of(entry.getKey(), pair[0], pair[1], this));
+		}
+		this.properties = properties.toArray(new Property[properties.size()]);
+		this.hasRequired = hasRequired;
+		
+		Constructor<T>[] constructors = (Constructor<T>[]) klass.getConstructors();
+		// Sort the constructors, the one with the most variables first
+		Arrays.sort(constructors, new Comparator<Constructor<?>>() {
+			@Override
+			public int compare(Constructor<?> o1, Constructor<?> o2) {
+				return o2.getParameterTypes().length - o1.getParameterTypes().length;
+			}
+		});
+		List<Creator<T>> creators = new ArrayList<Creator<T>>();
+		for ( Constructor<T> c : constructors ) {
+			Creator<T> creator = Creator.of(c, this);
+			if(creator != null) creators.add(creator);
+		}
+		@SuppressWarnings("unchecked")
+		Creator<T>[] array = (Creator<T>[]) creators.toArray(new Creator<?>[creators.size()]);
+		this.creators = array;
+		this.defaultConstructor = (constructors.length == 0) ? declaredConstructor(this.klass) : null;
+		this.buffered = this.creators.length > 0 && this.creators[0].parameters.length > 0;
+		
+		String[] names = new String[slots.size()];
+		this.slotsByIndex = new Slot[slots.size()];
+		for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+			names[entry.getValue().index] = entry.getKey();
+			slotsByIndex[entry.getValue().index] = entry.getValue();
+		}
+		this.names = new NameTable(names);
+		
+		// Properties are written in order, the other attributes follow
+		int[] order = new int[slots.size()];
+		boolean[] ordered = new boolean[slots.size()];
+		int count = 0;
+		for (Property property : this.properties) {
+			Slot slot = slots.get(property.name);
+			if (slot != null && !ordered[slot.index]) {
+				ordered[slot.index] = true;
+				order[count++] = slot.index;
+			}
+		}
+		for (int i = 0; i < order.length; i++) {
+			if (!ordered[i]) order[count++] = i;
+		}
+		this.nextSlots = new int[slots.size()];
+		for (int i = 0; i < count; i++)
+			nextSlots[order[i]] = (i + 1 < count) ? order[i + 1] : -1;
+		this.firstSlot = (count > 0) ? order[0] : -1;
+	}
+	
+	/**
+	 * @param klass the class
+	 * @return the binding plan for the class
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> ClassBinding<T> of(Class<T> klass) {
+		return (ClassBinding<T>) BINDINGS.get(klass);
+	}
+	
+	/**
+	 * @param name the attribute name
+	 * @return the slot for an attribute name, or {@code null} if the
+	 *         attribute cannot be bound
+	 */
+	Slot slot(String name) {
+		return slots.get(name);
+	}
+	
+	/**
+	 * @param index the index of a slot
+	 * @return the slot
+	 */
+	Slot slot(int index) {
+		return slotsByIndex[index];
+	}
+	
+	/**
+	 * @param index the index of a slot
+	 * @return the slot of the attribute that is expected after it, or -1
+	 */
+	int nextSlot(int index) {
+		return nextSlots[index];
+	}
+	
+	/**
+	 * @return the amount of slots
+	 */
+	int slotCount() {
+		return slots.size();
+	}
+	
+	/**
+	 * Add a property, and assign the slot for its attribute name if it is
+	 * writable
+	 * @param properties the properties
+	 * @param property the property
+	 * @return true if the property is writable and required
+	 */
+	private boolean addProperty(List<Property> properties, Property property) {
+		properties.add(property);
+		if(!property.writable) return false;
+		slot(property.name, property.type, property);
+		return property.required;
+	}
+	
+	/**
+	 * @param name the attribute name
+	 * @return the index of the slot for the attribute name, or the index
+	 *         that the slot gets when it is assigned next
+	 */
+	private int slotIndex(String name) {
+		Slot slot = slots.get(name);
+		return (slot == null) ? slots.size() : slot.index;
+	}
+	
+	/**
+	 * Get or assign the slot for an attribute name. The first field or
+	 * parameter that uses the name determines the type of the slot.
+	 */
+	private Slot slot(String name, ValueType type, Property property) {
+		Slot slot = slots.get(name);
+		if(slot == null) {
+			slot = new Slot(slots.size(), type, property);
+			slots.put(name, slot);
+		}
+		return slot;
+	}
+	
+	/**
+	 * Instantiate the class when no constructor takes attributes as parameters
+	 * @return the new instance
+	 * @throws JSONException if the class could not be instantiated
+	 */
+	T newInstance() throws JSONException {
+		try {
+			if(defaultConstructor != null)
+				return defaultConstructor.newInstance();
+			if(creators.length > 0)
+				return creators[0].constructor.newInstance();
+		} catch ( Exception e ) {
+			throw new JSONException(e);
+		}
+		throw new JSONException(klass.getCanonicalName() + " could not be instantiated");
+	}
+	
+	/**
+	 * @param m an annotated method
+	 * @return true if the method is a setter, false if it is a getter
+	 * @throws JSONException if the method is neither
+	 */
+	private static boolean isSetter(Method m) throws JSONException {
+		int parameters = m.getParameterTypes().length;
+		if(parameters == 0 && m.getReturnType() != void.class) return false;
+		if(parameters == 1) return true;
+		throw new JSONException(m + " is not a getter or setter");
+	}
+	
+	/**
+	 * Derive the attribute name from the name of a getter or setter, by
+	 * removing the {@code get}, {@code is} or {@code set} prefix
+	 * @param m the method
+	 * @param setter true if the method is a setter
+	 * @return the attribute name
+	 */
+	private static String attributeName(Method m, boolean setter) {
+		String name = m.getName();
+		int prefix = 0;
+		if(setter) {
+			if(name.startsWith("set")) prefix = 3;
+		} else if(name.startsWith("get")) {
+			prefix = 3;
+		} else if(name.startsWith("is")) {
+			prefix = 2;
+		}
+		if(prefix == 0 || name.length() == prefix || !Character.isUpperCase(name.charAt(prefix)))
+			return name;
+		// Keep names like getURL as URL
+		if(name.length() > prefix + 1 && Character.isUpperCase(name.charAt(prefix + 1)))
+			return name.substring(prefix);
+		return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+	}
+	
+	private static <T> Constructor<T> declaredConstructor(Class<T> klass) {
+		try {
+			Constructor<T> constructor = klass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor;
+		} catch ( Exception e ) {
+			return null;
+		}
+	}
+	
+	/**
+	 * A {@code Slot} is the index at which the value for an attribute name is
+	 * collected while an object is parsed.
+	 */
+	static final class Slot {
+		
+		final int index;
+		final ValueType type;
+		
+		/**
+		 * The writable field bound to the attribute, or {@code null} if it is
+		 * only used as constructor parameter
+		 */
+		final Property property;
+		
+		Slot(int index, ValueType type, Property property) {
+			this.index = index;
+			this.type = type;
+			this.property = property;
+		}
+	}
+	
+	/**
+	 * A {@code Creator} is a constructor of which all parameters have the
+	 * {@code JSONAttribute} annotation.
+	 */
+	static final class Creator<T> {
+		
+		final Constructor<T> constructor;
+		final Parameter[] parameters;
+		
+		/**
+		 * Because constructor parameter names are lost after compilation,
+		 * constructor parameters need to specify their attribute name in the
+		 * annotation. If one of the parameters does not, this message is
+		 * thrown when the constructor is used.
+		 */
+		final String error;
+		
+		private Creator(Constructor<T> constructor, Parameter[] parameters, String error) {
+			this.constructor = constructor;
+			this.parameters = parameters;
+			this.error = error;
+		}
+		
+		/**
+		 * @param c the constructor
+		 * @param binding the binding that assigns the slots of the parameters
+		 * @return a {@code Creator} for the constructor, or {@code null} if not
+		 *         all parameters are annotated
+		 */
+		static <T> Creator<T> of(Constructor<T> c, ClassBinding<?> binding) {
+			Class<?>[] parameterClasses = c.getParameterTypes();
+			Type[] parameterTypes = c.getGenericParameterTypes();
+			Annotation[][] annotations = c.getParameterAnnotations();
+			int l = parameterClasses.length;
+			JSONAttribute[] attributes = new JSONAttribute[l];
+			PARAMS : for(int i = 0; i < l; i++ ) {
+				for(Annotation a : annotations[i]) {
+					if(a instanceof JSONAttribute) {
+						attributes[i] = (JSONAttribute) a;
+						continue PARAMS;
+					}
+				}
+				// We can only use constructors with annotated parameters
+				return null;
+			}
+			// Only constructors that can be used are assigned slots
+			Parameter[] parameters = new Parameter[l];
+			String error = null;
+			for(int i = 0; i < l; i++ ) {
+				String name = attributes[i].name();
+				if(name.equals(EMPTY_STRING)) error = "Attribute name should be specified for constructor parameters";
+				ValueType type = ValueType.of(parameterClasses[i], parameterTypes[i]);
+				parameters[i] = new Parameter(name, attributes[i].required(), type,
+						binding.slot(name, type, null).index);
+			}
+			c.setAccessible(true);
+			return new Creator<T>(c, parameters, error);
+		}
+	}
+	
+	/**
+	 * An annotated constructor parameter
+	 */
+	static final class Parameter {
+		
+		final String name;
+		final boolean required;
+		final ValueType type;
+		final int slot;
+		
+		Parameter(String name, boolean required, ValueType type, int slot) {
+			this.name = name;
+			this.required = required;
+			this.type = type;
+			this.slot = slot;
+		}
+	}
+	
+	/**
+	 * An annotated field, or an annotated getter and setter method. The
+	 * value is read and written through method handles. For primitive
+	 * attributes the handles take and return the primitive type, so that they
+	 * can be invoked with {@code invokeExact} without boxing:
+	 * <pre>
+	 * property.setter.invokeExact(obj, reader.nextInt());
+	 * int value = (int) property.getter.invokeExact(obj);
+	 * </pre>
+	 * The handles of other attributes take and return {@code Object}.
+	 */
+	static final class Property {
+		
+		/**
+		 * The attribute name at which the value can be found in the JSON. If no
+		 * name is defined in the annotation, the field name or the name of the
+		 * getter or setter without its prefix is used.
+		 */
+		final String name;
+		
+		/**
+		 * The escaped attribute name between quotes and the separator after
+		 * it, encoded as UTF-8 once for the {@code JSONWriter}, for compact
+		 * output and for pretty printing
+		 */
+		final byte[] encodedName;
+		final byte[] prettyEncodedName;
+		final boolean required;
+		final ValueType type;
+		
+		/**
+		 * True if the handles use the primitive type of the attribute
+		 */
+		final boolean unboxed;
+		
+		/**
+		 * Handle of type {@code (Object)V} that reads the value, or
+		 * {@code null} if the attribute has only a setter
+		 */
+		final MethodHandle getter;
+		
+		/**
+		 * Handle of type {@code (Object,V)void} that sets the value, or
+		 * {@code null} if the attribute cannot be set. Final fields can only be
+		 * set through the constructor.
+		 */
+		final MethodHandle setter;
+		
+		/**
+		 * The setter, taking a boxed value
+		 */
+		final MethodHandle boxedSetter;
+		
+		/**
+		 * True if the value can be set through the setter
+		 */
+		final boolean writable;
+		
+		/**
+		 * The field or method from which the getter was created, or
+		 * {@code null}
+		 */
+		final Member getterMember;
+		
+		/**
+		 * The field or method from which the setter was created, or
+		 * {@code null}
+		 */
+		final Member setterMember;
+		
+		/**
+		 * The slot of a writable property, or -1
+		 */
+		final int slot;
+		
+		private Property(String name, boolean required, ValueType type, Member getterMember, MethodHandle getter,
+				Member setterMember, MethodHandle setter, int slot) {
+			this.name = name;
+			this.slot = slot;
+			this.getterMember = getterMember;
+			this.setterMember = setter == null ? null : setterMember;
+			this.encodedName = JSONWriter.encodeName(name, false);
+			this.prettyEncodedName = JSONWriter.encodeName(name, true);
+			this.required = required;
+			this.type = type;
+			this.unboxed = type.primitive && type.kind != ValueType.Kind.UNSUPPORTED;
+			Class<?> erased = unboxed ? type.rawType : Object.class;
+			this.getter = getter == null ? null : adapt(getter, MethodType.methodType(erased, Object.class));
+			this.setter = setter == null ? null : adapt(setter, MethodType.methodType(void.class, Object.class, erased));
+			this.boxedSetter = this.setter == null ? null : this.setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			this.writable = setter != null;
+		}
+		
+		/**
+		 * @param f an annotated field
+		 * @param annotation the annotation
+		 * @param binding the binding that assigns the slot of the property
+		 * @return the property for the field
+		 */
+		static Property of(Field f, JSONAttribute annotation, ClassBinding<?> binding) throws JSONException {
+			String name = annotation.name();
+			if(name.equals(EMPTY_STRING)) name = f.getName();
+			boolean writable = !Modifier.isFinal(f.getModifiers());
+			f.setAccessible(true);
+			try {
+				return new Property(name, annotation.required(),
+						ValueType.of(f.getType(), f.getGenericType()),
+						f, LOOKUP.unreflectGetter(f),
+						f, writable ? LOOKUP.unreflectSetter(f) : null,
+						writable ? binding.slotIndex(name) : -1);
+			} catch ( IllegalAccessException e ) {
+				throw new JSONException(e);
+			}
+		}
+		
+		/**
+		 * @param name the attribute name
+		 * @param getter the annotated getter, or {@code null}
+		 * @param setter the annotated setter, or {@code null}
+		 * @param binding the binding that assigns the slot of the property
+		 * @return the property for the methods
+		 * @throws JSONException if the getter and setter have different types
+		 */
+		static Property of(String name, Method getter, Method setter, ClassBinding<?> binding) throws JSONException {
+			ValueType type = null;
+			boolean required = false;
+			if(setter != null) {
+				type = ValueType.of(setter.getParameterTypes()[0], setter.getGenericParameterTypes()[0]);
+				required = setter.getAnnotation(JSONAttribute.class).required();
+				setter.setAccessible(true);
+			}
+			if(getter != null) {
+				if(type != null && type.rawType != getter.getReturnType())
+					throw new JSONException("Getter and setter for " + name + " have different types");
+				type = ValueType.of(getter.getReturnType(), getter.getGenericReturnType());
+				required |= getter.getAnnotation(JSONAttribute.class).required();
+				getter.setAccessible(true);
+			}
+			try {
+				return new Property(name, required, type,
+						getter, getter == null ? null : LOOKUP.unreflect(getter),
+						setter, setter == null ? null : LOOKUP.unreflect(setter),
+						setter == null ? -1 : binding.slotIndex(name));
+			} catch ( IllegalAccessException e ) {
+				throw new JSONException(e);
+			}
+		}
+		
+		/**
+		 * Adapt a handle to the erased type of the property. Handles for
+		 * static members ignore the object.
+		 */
+		private static MethodHandle adapt(MethodHandle handle, MethodType type) {
+			if(handle.type().parameterCount() < type.parameterCount())
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			return handle.asType(type);
+		}
+	}
+	
+}
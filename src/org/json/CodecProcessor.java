@@ -0,0 +1,949 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import org.json.ValueType.Kind;
+
+/**
+ * The {@code CodecProcessor} is an annotation processor that generates a
+ * {@link JSONCodec} for every {@code JSONSerializable} class with
+ * {@code JSONAttribute} annotations. The generated codecs decode and encode
+ * the class in the same way as the {@link Decoder} and {@link Encoder}, but
+ * without reflection. The processor is registered as service, so it runs
+ * whenever this library is on the class path of the compiler.
+ * <p>
+ * The codec is generated in the package of the class, so it can access
+ * package private attributes. No codec is generated for classes that cannot
+ * be accessed from the package, like private classes or classes with private
+ * attributes, or that have attributes of a type that is not supported. These
+ * classes are still decoded and encoded through reflection. No codec is
+ * generated either when a codec with the same name already exists, so codecs
+ * can also be written by hand. Generated codecs are marked with
+ * {@link JSONCodec.Generated}, and are generated again when they exist from
+ * an earlier build, so that they match the current class.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+@SupportedAnnotationTypes("org.json.JSONAttribute")
+public final class CodecProcessor extends AbstractProcessor {
+	
+	private final static String EMPTY_STRING = "";
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		Set<TypeElement> classes = new LinkedHashSet<TypeElement>();
+		for (Element element : round.getElementsAnnotatedWith(JSONAttribute.class)) {
+			Element enclosing = element.getEnclosingElement();
+			// Constructor parameters are enclosed by the constructor
+			if (element.getKind() == ElementKind.PARAMETER) enclosing = enclosing.getEnclosingElement();
+			if (enclosing instanceof TypeElement) classes.add((TypeElement) enclosing);
+		}
+		for (TypeElement type : classes) {
+			Generator generator = new Generator(type);
+			try {
+				generator.generate();
+			} catch ( Unsupported e ) {
+				if (generator.isGenerated(generator.existingCodec())) {
+					// The codec of an earlier build would still be used instead of reflection
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+							"No JSONCodec generated for " + type.getQualifiedName() + ": " + e.getMessage()
+							+ ", remove the codec generated earlier: " + generator.codecName, type);
+				} else {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+							"No JSONCodec generated for " + type.getQualifiedName() + ": " + e.getMessage(), type);
+				}
+			} catch ( IOException e ) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Could not write JSONCodec for " + type.getQualifiedName() + ": " + e.getMessage(), type);
+			}
+		}
+		// Other processors may use the annotation as well
+		return false;
+	}
+	
+	/**
+	 * Thrown when no codec can be generated for a class
+	 */
+	private static final class Unsupported extends Exception {
+		
+		private static final long serialVersionUID = 1L;
+		
+		Unsupported(String message) {
+			super(message);
+		}
+	}
+	
+	/**
+	 * An annotated field, or an annotated getter and setter method
+	 */
+	private static final class Property {
+		
+		final String name;
+		final boolean required;
+		final TypeMirror type;
+		
+		/**
+		 * The field or getter from which the value is read, or {@code null}
+		 */
+		final Element getter;
+		
+		/**
+		 * The field or setter through which the value is set, or {@code null}
+		 */
+		final Element setter;
+		
+		/**
+		 * The slot of a writable property
+		 */
+		int slot = -1;
+		
+		Property(String name, boolean required, TypeMirror type, Element getter, Element setter) {
+			this.name = name;
+			this.required = required;
+			this.type = type;
+			this.getter = getter;
+			this.setter = setter;
+		}
+	}
+	
+	/**
+	 * The local variable in which the value for an attribute name is
+	 * collected while an object is parsed
+	 */
+	private static final class Slot {
+		
+		final int index;
+		final String name;
+		final TypeMirror type;
+		
+		/**
+		 * The writable property bound to the attribute, or {@code null} if it
+		 * is only used as constructor parameter
+		 */
+		final Property property;
+		
+		Slot(int index, String name, TypeMirror type, Property property) {
+			this.index = index;
+			this.name = name;
+			this.type = type;
+			this.property = property;
+		}
+	}
+	
+	/**
+	 * A public constructor of which all parameters are annotated
+	 */
+	private static final class Creator {
+		
+		final List<Slot> parameters = new ArrayList<Slot>();
+		final List<Boolean> required = new ArrayList<Boolean>();
+	}
+	
+	/**
+	 * Generates the codec for a single class
+	 */
+	private final class Generator {
+		
+		private final Types types = processingEnv.getTypeUtils();
+		private final Elements elements = processingEnv.getElementUtils();
+		
+		private final TypeElement type;
+		private final String typeName;
+		
+		private final List<Property> properties = new ArrayList<Property>();
+		private final Map<String, Slot> slots = new LinkedHashMap<String, Slot>();
+		private final List<Creator> creators = new ArrayList<Creator>();
+		private boolean buffered;
+		
+		/**
+		 * Helper methods to read and write collections and maps, by type
+		 */
+		private final StringBuilder helpers = new StringBuilder();
+		private final Map<String, String> helperNames = new HashMap<String, String>();
+		
+		/**
+		 * The package and simple name of the codec, and its qualified name
+		 */
+		private final String packageName;
+		private final String simpleName;
+		final String codecName;
+		
+		Generator(TypeElement type) {
+			this.type = type;
+			this.typeName = type.getQualifiedName().toString();
+			this.packageName = ((PackageElement) packageOf(type)).getQualifiedName().toString();
+			String binaryName = elements.getBinaryName(type).toString();
+			this.simpleName = binaryName.substring(binaryName.lastIndexOf('.') + 1).replace('$', '_') + JSONCodec.SUFFIX;
+			this.codecName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		}
+		
+		/**
+		 * @return the codec with the name of the generated codec that already
+		 *         exists, for example from an earlier build, or {@code null}
+		 */
+		TypeElement existingCodec() {
+			return elements.getTypeElement(codecName);
+		}
+		
+		/**
+		 * @param codec a codec, or {@code null}
+		 * @return true if the codec was generated by this processor
+		 */
+		boolean isGenerated(TypeElement codec) {
+			return codec != null && codec.getAnnotation(JSONCodec.Generated.class) != null;
+		}
+		
+		void generate() throws Unsupported, IOException {
+			if (!isSubtype(type.asType(), "org.json.JSONSerializable"))
+				throw new Unsupported("not JSONSerializable");
+			if (!type.getTypeParameters().isEmpty())
+				throw new Unsupported("generic classes are not supported");
+			if (type.getModifiers().contains(Modifier.ABSTRACT))
+				throw new Unsupported("abstract classes cannot be instantiated");
+			checkAccessible(type);
+			bind();
+			
+			// Codecs can also be written by hand. Generated codecs are
+			// generated again, so they match the current class.
+			TypeElement existing = existingCodec();
+			if (existing != null && !isGenerated(existing))
+				throw new Unsupported(codecName + " already exists");
+			
+			StringBuilder sb = new StringBuilder();
+			if (!packageName.isEmpty())
+				sb.append("package ").append(packageName).append(";\n\n");
+			sb.append("/**\n")
+				.append(" * {@code JSONCodec} for {@link ").append(typeName).append("}, generated by\n")
+				.append(" * the {@code org.json.CodecProcessor}\n")
+				.append(" */\n")
+				.append("@org.json.JSONCodec.Generated\n")
+				.append("public final class ").append(simpleName)
+				.append(" extends org.json.JSONCodec<").append(typeName).append("> {\n\n")
+				.append("\tprivate final static org.json.NameTable NAMES = new org.json.NameTable(");
+			for (Slot slot : slots.values())
+				sb.append(slot.index > 0 ? ", " : "").append(literal(slot.name));
+			sb.append(");\n")
+				.append("\tprivate final static org.json.NameTable WRITE_NAMES = new org.json.NameTable(");
+			// The names of the properties with a getter, in the order in which they are written
+			int written = 0;
+			for (Property property : properties) {
+				if (property.getter == null) continue;
+				sb.append(written++ > 0 ? ", " : "").append(literal(property.name));
+			}
+			sb.append(");\n\n")
+				.append("\tpublic ").append(simpleName).append("() {\n")
+				.append("\t\tsuper(").append(typeName).append(".class);\n")
+				.append("\t}\n\n");
+			writeRead(sb);
+			writeWrite(sb);
+			sb.append(helpers).append("}\n");
+			
+			Writer w = processingEnv.getFiler().createSourceFile(codecName, type).openWriter();
+			try {
+				w.write(sb.toString());
+			} finally {
+				w.close();
+			}
+		}
+		
+		/**
+		 * Collect the properties, slots and creators in the same way as the
+		 * {@code ClassBinding}
+		 */
+		private void bind() throws Unsupported {
+			for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+				JSONAttribute annotation = field.getAnnotation(JSONAttribute.class);
+				if (annotation == null) continue;
+				checkAccessible(field);
+				String name = annotation.name();
+				properties.add(new Property(name.equals(EMPTY_STRING) ? field.getSimpleName().toString() : name,
+						annotation.required(), field.asType(), field,
+						field.getModifiers().contains(Modifier.FINAL) ? null : field));
+			}
+			// Getters and setters for the same attribute form a single property,
+			// ordered by name
+			Map<String, ExecutableElement[]> accessors = new TreeMap<String, ExecutableElement[]>();
+			for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+				JSONAttribute annotation = method.getAnnotation(JSONAttribute.class);
+				if (annotation == null) continue;
+				checkAccessible(method);
+				boolean setter = isSetter(method);
+				String name = annotation.name();
+				if (name.equals(EMPTY_STRING)) name = attributeName(method.getSimpleName().toString(), setter);
+				ExecutableElement[] pair = accessors.get(name);
+				if (pair == null) accessors.put(name, pair = new ExecutableElement[2]);
+				pair[setter ? 1 : 0] = method;
+			}
+			for (Map.Entry<String, ExecutableElement[]> entry : accessors.entrySet()) {
+				ExecutableElement getter = entry.getValue()[0], setter = entry.getValue()[1];
+				TypeMirror propertyType = null;
+				boolean required = false;
+				if (setter != null) {
+					propertyType = setter.getParameters().get(0).asType();
+					required = setter.getAnnotation(JSONAttribute.class).required();
+				}
+				if (getter != null) {
+					if (propertyType != null && !types.isSameType(propertyType, getter.getReturnType()))
+						throw new Unsupported("getter and setter for " + entry.getKey() + " have different types");
+					propertyType = getter.getReturnType();
+					required |= getter.getAnnotation(JSONAttribute.class).required();
+				}
+				properties.add(new Property(entry.getKey(), required, propertyType, getter, setter));
+			}
+			for (Property property : properties) {
+				if (property.setter != null)
+					property.slot = slot(property.name, property.type, property).index;
+			}
+			
+			List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+			boolean hasPublicConstructor = false;
+			ExecutableElement defaultConstructor = null;
+			for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+				if (constructor.getModifiers().contains(Modifier.PUBLIC)) {
+					hasPublicConstructor = true;
+					constructors.add(constructor);
+				} else if (constructor.getParameters().isEmpty()) {
+					defaultConstructor = constructor;
+				}
+			}
+			// The one with the most parameters first
+			Collections.sort(constructors, new Comparator<ExecutableElement>() {
+				@Override
+				public int compare(ExecutableElement o1, ExecutableElement o2) {
+					return o2.getParameters().size() - o1.getParameters().size();
+				}
+			});
+			CONSTRUCTORS : for (ExecutableElement constructor : constructors) {
+				Creator creator = new Creator();
+				for (VariableElement parameter : constructor.getParameters()) {
+					JSONAttribute annotation = parameter.getAnnotation(JSONAttribute.class);
+					// We can only use constructors with annotated parameters
+					if (annotation == null) continue CONSTRUCTORS;
+					if (annotation.name().equals(EMPTY_STRING))
+						throw new Unsupported("attribute name should be specified for constructor parameters");
+					Slot slot = slot(annotation.name(), parameter.asType(), null);
+					if (!types.isSameType(slot.type, parameter.asType()))
+						throw new Unsupported("constructor parameter " + annotation.name() + " has a different type");
+					creator.parameters.add(slot);
+					creator.required.add(annotation.required());
+				}
+				creators.add(creator);
+			}
+			buffered = !creators.isEmpty() && !creators.get(0).parameters.isEmpty();
+			if (!buffered) {
+				if (hasPublicConstructor ? creators.isEmpty() : defaultConstructor == null)
+					throw new Unsupported("no constructor can be used");
+				if (!hasPublicConstructor) checkAccessible(defaultConstructor);
+			}
+		}
+		
+		private Slot slot(String name, TypeMirror slotType, Property property) {
+			Slot slot = slots.get(name);
+			if (slot == null) {
+				slot = new Slot(slots.size(), name, slotType, property);
+				slots.put(name, slot);
+			}
+			return slot;
+		}
+		
+		/**
+		 * The order in which the attributes are expected, the same as in the
+		 * {@code ClassBinding}: properties in the order they are written,
+		 * followed by the other slots
+		 * @return for every slot the slot that is expected after it, or -1,
+		 * 	followed by the first slot
+		 */
+		private int[] expectedOrder() {
+			int[] order = new int[slots.size()];
+			boolean[] ordered = new boolean[slots.size()];
+			int count = 0;
+			for (Property property : properties) {
+				Slot slot = slots.get(property.name);
+				if (slot != null && !ordered[slot.index]) {
+					ordered[slot.index] = true;
+					order[count++] = slot.index;
+				}
+			}
+			for (int i = 0; i < order.length; i++) {
+				if (!ordered[i]) order[count++] = i;
+			}
+			int[] next = new int[count + 1];
+			for (int i = 0; i < count; i++)
+				next[order[i]] = (i + 1 < count) ? order[i + 1] : -1;
+			next[count] = (count > 0) ? order[0] : -1;
+			return next;
+		}
+		
+		/**
+		 * Write the method that reads an object
+		 */
+		private void writeRead(StringBuilder sb) throws Unsupported {
+			sb.append("\t@Override\n")
+				.append("\tpublic ").append(typeName).append(" read(org.json.JSONReader reader) throws org.json.JSONException {\n");
+			boolean[] tracked = new boolean[slots.size()];
+			if (buffered) {
+				// Values are collected in local variables until the object can be instantiated
+				for (Slot slot : slots.values()) {
+					sb.append("\t\t").append(slot.type).append(" value").append(slot.index)
+						.append(" = ").append(defaultValue(slot.type)).append(";\n");
+					sb.append("\t\tboolean present").append(slot.index).append(" = false;\n");
+					tracked[slot.index] = true;
+				}
+			} else {
+				sb.append("\t\t").append(typeName).append(" obj = new ").append(typeName).append("();\n");
+				for (Property property : properties) {
+					if (property.setter != null && property.required && !tracked[property.slot]) {
+						sb.append("\t\tboolean present").append(property.slot).append(" = false;\n");
+						tracked[property.slot] = true;
+					}
+				}
+			}
+			// Names are matched in the input buffer, the expected name first
+			int[] next = expectedOrder();
+			sb.append("\t\tint expected = ").append(next[slots.size()]).append(";\n")
+				.append("\t\treader.beginObject();\n")
+				.append("\t\twhile (reader.hasNext()) {\n")
+				.append("\t\t\tswitch (reader.nextName(NAMES, expected)) {\n");
+			for (Slot slot : slots.values()) {
+				sb.append("\t\t\tcase ").append(slot.index).append(":\n");
+				if (slot.type.getKind().isPrimitive()) {
+					sb.append("\t\t\t\tif (reader.peek() == org.json.JSONToken.NULL) throw nullValue(\"")
+						.append(slot.type).append("\");\n");
+				}
+				String value = readExpression(slot.type);
+				if (buffered) {
+					sb.append("\t\t\t\tvalue").append(slot.index).append(" = ").append(value).append(";\n");
+				} else {
+					sb.append("\t\t\t\t").append(set(slot.property, "obj", value)).append(";\n");
+				}
+				if (tracked[slot.index])
+					sb.append("\t\t\t\tpresent").append(slot.index).append(" = true;\n");
+				sb.append("\t\t\t\texpected = ").append(next[slot.index]).append(";\n")
+					.append("\t\t\t\tbreak;\n");
+			}
+			sb.append("\t\t\tdefault:\n")
+				.append("\t\t\t\t// Attributes that are not bound are skipped\n")
+				.append("\t\t\t\treader.skipValue();\n")
+				.append("\t\t\t}\n")
+				.append("\t\t}\n")
+				.append("\t\treader.endObject();\n");
+			
+			if (buffered) {
+				sb.append("\t\t").append(typeName).append(" obj;\n");
+				String keyword = "if";
+				boolean complete = false;
+				for (Creator creator : creators) {
+					StringBuilder condition = new StringBuilder();
+					StringBuilder arguments = new StringBuilder();
+					for (int i = 0; i < creator.parameters.size(); i++) {
+						int index = creator.parameters.get(i).index;
+						if (creator.required.get(i)) {
+							if (condition.length() > 0) condition.append(" && ");
+							condition.append("present").append(index);
+						}
+						if (i > 0) arguments.append(", ");
+						arguments.append("value").append(index);
+					}
+					String create = "obj = new " + typeName + "(" + arguments + ");\n";
+					if (condition.length() == 0) {
+						// Constructors without required parameters can always be used
+						if (keyword.equals("if")) {
+							sb.append("\t\t").append(create);
+						} else {
+							sb.append("\t\telse\n\t\t\t").append(create);
+						}
+						complete = true;
+						break;
+					}
+					sb.append("\t\t").append(keyword).append(" (").append(condition).append(")\n")
+						.append("\t\t\t").append(create);
+					keyword = "else if";
+				}
+				if (!complete)
+					sb.append("\t\telse\n\t\t\tthrow notInstantiable(").append(typeName).append(".class);\n");
+			}
+			for (Property property : properties) {
+				if (property.setter == null || !tracked[property.slot]) continue;
+				if (property.required) {
+					sb.append("\t\tif (!present").append(property.slot).append(") throw missing(")
+						.append(literal(property.name)).append(");\n");
+					if (buffered)
+						sb.append("\t\t").append(set(property, "obj", "value" + property.slot)).append(";\n");
+				} else {
+					// Only optional attributes of constructed objects are tracked
+					sb.append("\t\tif (present").append(property.slot).append(") ")
+						.append(set(property, "obj", "value" + property.slot)).append(";\n");
+				}
+			}
+			sb.append("\t\treturn obj;\n")
+				.append("\t}\n\n");
+		}
+		
+		/**
+		 * Write the method that writes an object
+		 */
+		private void writeWrite(StringBuilder sb) throws Unsupported {
+			sb.append("\t@Override\n")
+				.append("\tpublic void write(org.json.JSONWriter writer, ").append(typeName)
+				.append(" value) throws org.json.JSONException, java.io.IOException {\n")
+				.append("\t\twriter.beginObject();\n");
+			// The names are written from the table in which they are encoded once
+			int index = 0;
+			for (Property property : properties) {
+				if (property.getter == null) continue;
+				sb.append("\t\twriter.name(WRITE_NAMES, ").append(index++).append(");\n");
+				sb.append("\t\t").append(writeStatement(property.type, get(property, "value"))).append("\n");
+			}
+			sb.append("\t\twriter.endObject();\n")
+				.append("\t}\n\n");
+		}
+		
+		private String set(Property property, String obj, String value) {
+			if (property.setter.getKind() == ElementKind.FIELD)
+				return obj + "." + property.setter.getSimpleName() + " = " + value;
+			return obj + "." + property.setter.getSimpleName() + "(" + value + ")";
+		}
+		
+		private String get(Property property, String obj) {
+			if (property.getter.getKind() == ElementKind.FIELD)
+				return obj + "." + property.getter.getSimpleName();
+			return obj + "." + property.getter.getSimpleName() + "()";
+		}
+		
+		/**
+		 * @param t the type
+		 * @return an expression that reads a value of the type
+		 */
+		private String readExpression(TypeMirror t) throws Unsupported {
+			boolean primitive = t.getKind().isPrimitive();
+			String value;
+			switch (kindOf(t)) {
+			case STRING:
+				return "nextNull(reader) ? null : reader.nextString()";
+			case BOOLEAN:
+				value = "reader.nextBoolean()";
+				return primitive ? value : "nextNull(reader) ? null : Boolean.valueOf(" + value + ")";
+			case BYTE:
+				value = "toByte(reader.nextInt())";
+				return primitive ? value : "nextNull(reader) ? null : Byte.valueOf(" + value + ")";
+			case SHORT:
+				value = "toShort(reader.nextInt())";
+				return primitive ? value : "nextNull(reader) ? null : Short.valueOf(" + value + ")";
+			case INTEGER:
+				value = "reader.nextInt()";
+				return primitive ? value : "nextNull(reader) ? null : Integer.valueOf(" + value + ")";
+			case LONG:
+				value = "reader.nextLong()";
+				return primitive ? value : "nextNull(reader) ? null : Long.valueOf(" + value + ")";
+			case FLOAT:
+				value = "reader.nextFloat()";
+				return primitive ? value : "nextNull(reader) ? null : Float.valueOf(" + value + ")";
+			case DOUBLE:
+				value = "reader.nextDouble()";
+				return primitive ? value : "nextNull(reader) ? null : Double.valueOf(" + value + ")";
+			case OBJECT:
+				checkAccessible(types.asElement(t));
+				return "org.json.Decoder.decode(" + types.erasure(t) + ".class, reader)";
+			case COLLECTION:
+				return readCollection(t) + "(reader)";
+			case MAP:
+				return readMap(t) + "(reader)";
+			default:
+				throw new Unsupported("values of type " + t + " cannot be decoded");
+			}
+		}
+		
+		/**
+		 * @param t the type
+		 * @param value expression for the value
+		 * @return a statement that writes the value
+		 */
+		private String writeStatement(TypeMirror t, String value) throws Unsupported {
+			switch (kindOf(t)) {
+			case BOOLEAN:
+				if (!t.getKind().isPrimitive())
+					return writeBoolean() + "(writer, " + value + ");";
+				return "writer.value(" + value + ");";
+			case STRING:
+				return "writer.value(" + value + ");";
+			case BYTE:
+			case SHORT:
+			case INTEGER:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+			case NUMBER:
+				return t.getKind().isPrimitive() ? "writer.value(" + value + ");"
+						: "writer.value((Number) " + value + ");";
+			case OBJECT:
+				return "org.json.Encoder.encode(writer, " + value + ");";
+			case COLLECTION:
+				return writeCollection(t) + "(writer, " + value + ");";
+			case MAP:
+				return writeMap(t) + "(writer, " + value + ");";
+			default:
+				throw new Unsupported("values of type " + t + " cannot be encoded");
+			}
+		}
+		
+		private String readCollection(TypeMirror t) throws Unsupported {
+			String key = "read " + t;
+			String name = helperNames.get(key);
+			if (name != null) return name;
+			TypeMirror element = typeArgument(t, 0, 1);
+			String implementation = implementation(t, Kind.COLLECTION, "<" + element + ">");
+			String value = readExpression(element);
+			helperNames.put(key, name = "read" + helperNames.size());
+			helpers.append("\tprivate static ").append(t).append(" ").append(name)
+				.append("(org.json.JSONReader reader) throws org.json.JSONException {\n")
+				.append("\t\tif (nextNull(reader)) return null;\n")
+				.append("\t\t").append(implementation).append(" value = new ").append(implementation).append("();\n")
+				.append("\t\treader.beginArray();\n")
+				.append("\t\twhile (reader.hasNext())\n")
+				.append("\t\t\tvalue.add(").append(value).append(");\n")
+				.append("\t\treader.endArray();\n")
+				.append("\t\treturn value;\n")
+				.append("\t}\n\n");
+			return name;
+		}
+		
+		private String readMap(TypeMirror t) throws Unsupported {
+			String key = "read " + t;
+			String name = helperNames.get(key);
+			if (name != null) return name;
+			checkKeyType(t);
+			TypeMirror element = typeArgument(t, 1, 2);
+			String implementation = implementation(t, Kind.MAP, "<String, " + element + ">");
+			String value = readExpression(element);
+			helperNames.put(key, name = "read" + helperNames.size());
+			helpers.append("\tprivate static ").append(t).append(" ").append(name)
+				.append("(org.json.JSONReader reader) throws org.json.JSONException {\n")
+				.append("\t\tif (nextNull(reader)) return null;\n")
+				.append("\t\t").append(implementation).append(" value = new ").append(implementation).append("();\n")
+				.append("\t\treader.beginObject();\n")
+				.append("\t\twhile (reader.hasNext())\n")
+				.append("\t\t\tvalue.put(reader.nextName(), ").append(value).append(");\n")
+				.append("\t\treader.endObject();\n")
+				.append("\t\treturn value;\n")
+				.append("\t}\n\n");
+			return name;
+		}
+		
+		private String writeCollection(TypeMirror t) throws Unsupported {
+			String key = "write " + t;
+			String name = helperNames.get(key);
+			if (name != null) return name;
+			TypeMirror element = typeArgument(t, 0, 1);
+			String statement = writeStatement(element, "element");
+			helperNames.put(key, name = "write" + helperNames.size());
+			helpers.append("\tprivate static void ").append(name)
+				.append("(org.json.JSONWriter writer, ").append(t)
+				.append(" value) throws org.json.JSONException, java.io.IOException {\n")
+				.append("\t\tif (value == null) {\n")
+				.append("\t\t\twriter.nullValue();\n")
+				.append("\t\t\treturn;\n")
+				.append("\t\t}\n")
+				.append("\t\twriter.beginArray();\n")
+				.append("\t\tfor (").append(element).append(" element : value)\n")
+				.append("\t\t\t").append(statement).append("\n")
+				.append("\t\twriter.endArray();\n")
+				.append("\t}\n\n");
+			return name;
+		}
+		
+		private String writeMap(TypeMirror t) throws Unsupported {
+			String key = "write " + t;
+			String name = helperNames.get(key);
+			if (name != null) return name;
+			checkKeyType(t);
+			TypeMirror element = typeArgument(t, 1, 2);
+			String entry = "java.util.Map.Entry<String, " + ((DeclaredType) t).getTypeArguments().get(1) + ">";
+			String statement = writeStatement(element, "entry.getValue()");
+			helperNames.put(key, name = "write" + helperNames.size());
+			helpers.append("\tprivate static void ").append(name)
+				.append("(org.json.JSONWriter writer, ").append(t)
+				.append(" value) throws org.json.JSONException, java.io.IOException {\n")
+				.append("\t\tif (value == null) {\n")
+				.append("\t\t\twriter.nullValue();\n")
+				.append("\t\t\treturn;\n")
+				.append("\t\t}\n")
+				.append("\t\twriter.beginObject();\n")
+				.append("\t\tfor (").append(entry).append(" entry : value.entrySet()) {\n")
+				.append("\t\t\twriter.name(entry.getKey());\n")
+				.append("\t\t\t").append(statement).append("\n")
+				.append("\t\t}\n")
+				.append("\t\twriter.endObject();\n")
+				.append("\t}\n\n");
+			return name;
+		}
+		
+		private String writeBoolean() {
+			String key = "write java.lang.Boolean";
+			String name = helperNames.get(key);
+			if (name != null) return name;
+			helperNames.put(key, name = "write" + helperNames.size());
+			helpers.append("\tprivate static void ").append(name)
+				.append("(org.json.JSONWriter writer, Boolean value) throws org.json.JSONException, java.io.IOException {\n")
+				.append("\t\tif (value == null) writer.nullValue();\n")
+				.append("\t\telse writer.value(value.booleanValue());\n")
+				.append("\t}\n\n");
+			return name;
+		}
+		
+		/**
+		 * @return the kind of a type, like {@code ValueType} resolves it for
+		 *         classes
+		 */
+		private Kind kindOf(TypeMirror t) {
+			switch (t.getKind()) {
+			case BOOLEAN:
+				return Kind.BOOLEAN;
+			case BYTE:
+				return Kind.BYTE;
+			case SHORT:
+				return Kind.SHORT;
+			case INT:
+				return Kind.INTEGER;
+			case LONG:
+				return Kind.LONG;
+			case FLOAT:
+				return Kind.FLOAT;
+			case DOUBLE:
+				return Kind.DOUBLE;
+			case DECLARED:
+				break;
+			default:
+				return Kind.UNSUPPORTED;
+			}
+			String name = ((TypeElement) types.asElement(t)).getQualifiedName().toString();
+			if (name.equals("java.lang.String")) {
+				return Kind.STRING;
+			} else if (name.equals("java.lang.Boolean")) {
+				return Kind.BOOLEAN;
+			} else if (name.equals("java.lang.Byte")) {
+				return Kind.BYTE;
+			} else if (name.equals("java.lang.Short")) {
+				return Kind.SHORT;
+			} else if (name.equals("java.lang.Integer")) {
+				return Kind.INTEGER;
+			} else if (name.equals("java.lang.Long")) {
+				return Kind.LONG;
+			} else if (name.equals("java.lang.Float")) {
+				return Kind.FLOAT;
+			} else if (name.equals("java.lang.Double")) {
+				return Kind.DOUBLE;
+			} else if (isSubtype(t, "org.json.JSONSerializable")) {
+				return Kind.OBJECT;
+			} else if (isSubtype(t, "java.util.Collection")) {
+				return Kind.COLLECTION;
+			} else if (isSubtype(t, "java.util.Map")) {
+				return Kind.MAP;
+			} else if (isSubtype(t, "java.lang.Number")) {
+				return Kind.NUMBER;
+			}
+			return Kind.UNSUPPORTED;
+		}
+		
+		private boolean isSubtype(TypeMirror t, String name) {
+			TypeElement element = elements.getTypeElement(name);
+			return element != null && types.isAssignable(types.erasure(t), types.erasure(element.asType()));
+		}
+		
+		/**
+		 * Resolve a type argument, like {@code ValueType} does for the values
+		 * of collections and maps
+		 */
+		private TypeMirror typeArgument(TypeMirror t, int index, int count) throws Unsupported {
+			List<? extends TypeMirror> arguments = ((DeclaredType) t).getTypeArguments();
+			if (arguments.size() != count)
+				throw new Unsupported("the values of " + t + " have an unknown type");
+			TypeMirror argument = arguments.get(index);
+			if (argument.getKind() == TypeKind.WILDCARD) {
+				argument = ((WildcardType) argument).getExtendsBound();
+				if (argument == null)
+					throw new Unsupported("the values of " + t + " have an unknown type");
+			}
+			return argument;
+		}
+		
+		private void checkKeyType(TypeMirror t) throws Unsupported {
+			if (kindOf(typeArgument(t, 0, 2)) != Kind.STRING)
+				throw new Unsupported("the keys of " + t + " are not strings");
+		}
+		
+		/**
+		 * Find the class to instantiate for a collection or map. Interfaces and
+		 * abstract classes are instantiated with the first default
+		 * implementation that is assignable to the type.
+		 */
+		private String implementation(TypeMirror t, Kind kind, String arguments) throws Unsupported {
+			TypeElement element = (TypeElement) types.asElement(t);
+			if (element.getKind() == ElementKind.INTERFACE || element.getModifiers().contains(Modifier.ABSTRACT)) {
+				String[] implementations = kind == Kind.COLLECTION
+						? new String[] { "java.util.ArrayList", "java.util.HashSet", "java.util.TreeSet" }
+						: new String[] { "java.util.HashMap", "java.util.TreeMap" };
+				for (String implementation : implementations) {
+					if (isSubtype(elements.getTypeElement(implementation).asType(), element.getQualifiedName().toString()))
+						return implementation + arguments;
+				}
+				throw new Unsupported(t + " cannot be instantiated");
+			}
+			for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+				if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+					return types.erasure(t) + arguments;
+			}
+			throw new Unsupported(t + " cannot be instantiated");
+		}
+		
+		private String defaultValue(TypeMirror t) {
+			switch (t.getKind()) {
+			case BOOLEAN:
+				return "false";
+			case LONG:
+				return "0L";
+			case FLOAT:
+				return "0f";
+			case DOUBLE:
+				return "0d";
+			case BYTE:
+			case SHORT:
+				return "(" + t + ") 0";
+			case INT:
+				return "0";
+			default:
+				return "null";
+			}
+		}
+		
+		/**
+		 * Make sure an element can be accessed from the package of the codec
+		 */
+		private void checkAccessible(Element element) throws Unsupported {
+			for (Element e = element; e != null && !(e instanceof PackageElement); e = e.getEnclosingElement()) {
+				if (e.getModifiers().contains(Modifier.PRIVATE))
+					throw new Unsupported(e + " is private");
+				if (e instanceof TypeElement) {
+					NestingKind nesting = ((TypeElement) e).getNestingKind();
+					if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS
+							|| (nesting == NestingKind.MEMBER && !e.getModifiers().contains(Modifier.STATIC)
+								&& e.getEnclosingElement().getKind() != ElementKind.INTERFACE))
+						throw new Unsupported(e + " is not a static class");
+				}
+			}
+			if (packageOf(element) != packageOf(type) && !element.getModifiers().contains(Modifier.PUBLIC))
+				throw new Unsupported(element + " is not public");
+		}
+		
+		private Element packageOf(Element element) {
+			Element e = element;
+			while (!(e instanceof PackageElement)) e = e.getEnclosingElement();
+			return e;
+		}
+		
+		/**
+		 * @return true if the method is a setter, false if it is a getter
+		 */
+		private boolean isSetter(ExecutableElement method) throws Unsupported {
+			int parameters = method.getParameters().size();
+			if (parameters == 0 && method.getReturnType().getKind() != TypeKind.VOID) return false;
+			if (parameters == 1) return true;
+			throw new Unsupported(method + " is not a getter or setter");
+		}
+		
+		/**
+		 * @return the attribute name of a getter or setter, see
+		 *         {@code ClassBinding}
+		 */
+		private String attributeName(String name, boolean setter) {
+			int prefix = 0;
+			if (setter) {
+				if (name.startsWith("set")) prefix = 3;
+			} else if (name.startsWith("get")) {
+				prefix = 3;
+			} else if (name.startsWith("is")) {
+				prefix = 2;
+			}
+			if (prefix == 0 || name.length() == prefix || !Character.isUpperCase(name.charAt(prefix)))
+				return name;
+			if (name.length() > prefix + 1 && Character.isUpperCase(name.charAt(prefix + 1)))
+				return name.substring(prefix);
+			return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+		}
+		
+		/**
+		 * @return a Java string literal
+		 */
+		private String literal(String s) {
+			StringBuilder sb = new StringBuilder("\"");
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '"' || c == '\\') sb.append('\\').append(c);
+				else if (c < ' ' || c > '~') sb.append(String.format("\\u%04x", (int) c));
+				else sb.append(c);
+			}
+			return sb.append('"').toString();
+		}
+	}
+	
+}
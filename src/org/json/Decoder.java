@@ -26,586 +26,601 @@ package org.json;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+
+import org.json.ClassBinding.Creator;
+import org.json.ClassBinding.Parameter;
+import org.json.ClassBinding.Property;
+import org.json.ClassBinding.Slot;
 
 /**
  * A decoder is used for JSON deserialization. A subclass of type
  * {@code JSONSerializable} should be provided as entry point.
+ * <p>
+ * The decoder reads the tokens from a {@link JSONReader} only once, and binds
+ * the values to the target objects while they are parsed.
  * 
  * @author Jan-Willem Gmelig Meyling
  */
 public final class Decoder<T extends JSONSerializable> {
 
-	private final static String NULL = "null";
-	private final static String EMPTY_STRING = "";
-	private final Class<T> klass;
-	
-	private int depth = 0;
-	private boolean isKey = true;
-	private boolean isArray = false;
-	
-	private final Reader reader;
-	private int current = 0;
-	private int previous = 0;
-	private int next = 0;
+	/**
+	 * The size of the buffer for input streams and files
+	 */
+	private static volatile int bufferSize = JSONReader.DEFAULT_BUFFER_SIZE;
+	/**
+	 * True if objects are decoded through codecs generated at runtime
+	 */
+	private static volatile boolean generatedCodecs = false;
+	/**
+	 * The cache for short strings that is shared by all decoders, or
+	 * {@code null}
+	 */
+	private static volatile StringCache stringCache = null;
 	
-	private final Map<String, String> pairs = new HashMap<String, String>();
-	private final List<String> arrayContents = new ArrayList<String>();
+	private final Class<T> klass;
+	private final JSONReader reader;
 	
 	/**
 	 * Construct a new Decoder, that should return an object of Type {@code T}.
 	 * @param klass Type of Object that should be created
-	 * @param reader the Reader
+	 * @param reader the JSONReader
 	 */
-	private Decoder(Class<T> klass, Reader reader) {
+	private Decoder(Class<T> klass, JSONReader reader) {
 		this.klass = klass;
 		this.reader = reader;
-		try {
-			// Read the first character
-			this.next = reader.read();
-		} catch (IOException e) {
-			throw new JSONException(e);
+	}
+	
+	/**
+	 * Set the size of the buffer into which input streams are read. The
+	 * size applies to all decoders, also on other threads. To use another
+	 * size for a single document, decode it from a {@code JSONReader} with
+	 * {@link #decode(Class, JSONReader)}.
+	 * @param size amount of characters that are read at once
+	 */
+	public static void setBufferSize(int size) {
+		if(size > 0) {
+			bufferSize = size;
 		}
-		parse();
 	}
 	
 	/**
-	 * Construct a new Decoder, that should return an object of Type T
-	 * @param klass Type of Object that should be created
-	 * @param input String that should be decoded
+	 * Share the instances of short strings that are decoded repeatedly, such
+	 * as values of enumerations and map keys, through a cache. The cache is
+	 * used by all decoders, also on other threads. A cache for a single
+	 * document can be set on a {@code JSONReader} that is decoded with
+	 * {@link #decode(Class, JSONReader)}.
+	 * @param cache the cache, or {@code null} to disable caching
 	 */
-	private Decoder(Class<T> klass, String input) {
-		this(klass, new StringReader(input));
+	public static void setStringCache(StringCache cache) {
+		stringCache = cache;
 	}
 	
 	/**
-	 * Construct a new Decoder, that should return an object of Type T
-	 * @param klass Type of Object that should be created
-	 * @param io InputStream
+	 * Decode objects through classes that are generated at runtime for every
+	 * {@code JSONSerializable} class, instead of through reflection. Classes
+	 * for which no codec can be generated, for example because they have
+	 * non-public attributes, are still decoded through reflection.
+	 * The setting applies to all decoders, also on other threads.
+	 * @param enabled true to generate codecs
 	 */
-	private Decoder(Class<T> klass, InputStream io) {
-		this(klass, new InputStreamReader(io));
+	public static void setGeneratedCodecs(boolean enabled) {
+		generatedCodecs = enabled;
 	}
 	
 	/**
-	 * This method parses the first level of the JSON String, and puts it's
-	 * values in the pairs Map - for objects - or the contents List - for
-	 * arrays. Then, the object can be instantiated later on with the
-	 * {@link #decode()} method.
-	 * 
-	 * @see {@link #decode()}
+	 * Decode the next value from the reader
+	 * @return the decoded object
 	 */
-	private void parse() {
-		String key = null;
-		StringBuilder sb = new StringBuilder();
-		
-		LOOP : while(this.hasNext()) {
-			char c = next();
-			SWITCH : switch(c) {
-			case ' ':
-			case '\t':
-			case '\n':
-			case '\r':
-				/*
-				 * Spaces can be ignored at this point. Spaces within quotes are
-				 * handled there.
-				 */
-				continue LOOP;
-			case ':':
-				/*
-				 * Colons separate keys from values in an JSON Object. When such
-				 * a comma is found, break the switch, and set the current
-				 * builder value as key, and continue to look for its value.
-				 * When already expecting a value, an exception is thrown. When
-				 * we're in a JSONArray, an exception is thrown as well; values
-				 * in a JSON Array should be separated by commas.
-				 */
-				if(isArray || !isKey) throw new JSONException("Unexpected value");
-				break SWITCH;
-			case ',': 
-				/*
-				 * Comma's separate values in an array and key value pairs in
-				 * objects. Check if we're in array mode, and if we're at the
-				 * current depth, if so, append the last value to the values
-				 * list, and clear the StringBuilder for the next value. If not,
-				 * break out of the switch, to complete a key or value.
-				 */
-				if(depth == 1 && isArray) {
-					arrayContents.add(sb.toString());
-					sb.setLength(0);
-					continue LOOP;
-				}
-				else break SWITCH;
-			case '"':
-			case '\'':
-				/*
-				 * Quoted string, find the next quote, and append the substring 
-				 */
-				sb.append(c);
-				while(hasNext()) {
-					char next = next();
-					sb.append(next);
-					if(next == c && previous() != '\\') {
-						continue LOOP;
-					}
-				}
-				throw new JSONException("Unexpected end of input");
-			case '[':
-				/*
-				 * This bracket marks the beginning of an array. If we're at
-				 * initial depth, the object we're parsing at the current level
-				 * is an array - switch to array mode. If not, the array should
-				 * be a value instead. Continue to the first matching closing
-				 * bracket and append all characters in between - these are
-				 * parsed recursively while instantiating this object.
-				 */
-				depth++;
-				if(depth == 1) {
-					isArray = true;
-					continue LOOP;
-				}
-				if(isKey) throw new JSONException("Expected key a key, but got a value instead");
-				sb.append(c);
-				while(hasNext()) {
-					char next = next();
-					sb.append(next);
-					if(next == '[') {
-						depth++;
-					} else if (next == ']') {
-						depth--;
-						if(depth == 1) {
-							continue LOOP;
-						}
-					}
-				}
-				throw new JSONException("Malformed input");
-			case '{':
-				/*
-				 * This bracket marks the beginning of an object. If we're at
-				 * initial depth, the object we're parsing at the current level
-				 * is an object - stay in object mode. If we're not at initial
-				 * depth, this object should be a value. Skip to the next
-				 * matching closing bracket, and append all characters in
-				 * between to the StringBuilder. These are parsed recursively
-				 * while instantiating this object.
-				 */
-				if(isKey && !isArray && depth != 0) throw new JSONException("Expected key a key, but got a value instead");
-				depth++;
-				if(depth > 1 ) {
-					sb.append(c);
-					while(hasNext()) {
-						char next = next();
-						sb.append(next);
-						if(next == '{') {
-							depth++;
-						} else if (next == '}') {
-							depth--;
-							if(depth == 1) { // At original level, continue upper loop
-								continue LOOP;
-							}
-						}
-					}
-					throw new JSONException("Malformed input");
-				}
-				continue LOOP;
-			case '}':
-				/*
-				 * This should be the end of the  JSON string
-				 */
-				if(hasNext())
-					throw new JSONException("Unexpected end of input");
-				break SWITCH;
-			case ']':
-				/*
-				 * This should be the end of the Array
-				 */
-				if(depth == 1) {
-					arrayContents.add(sb.toString());
-					continue LOOP;
+	@SuppressWarnings("unchecked")
+	private T decode() throws JSONException {
+		return (T) readValue(ValueType.of(klass));
+	}
+	
+	/**
+	 * Decode the document, and make sure nothing but whitespace follows it
+	 * @return the decoded object
+	 */
+	private T decodeDocument() throws JSONException {
+		T obj = decode();
+		if(reader.peek() != JSONToken.END_DOCUMENT)
+			throw new JSONException("Unexpected input after end of object");
+		return obj;
+	}
+	
+	/**
+	 * Read a value of the given type
+	 * @param type the resolved type of the value
+	 * @return the value, or {@code null} for a JSON null
+	 * @throws JSONException if the value could not be parsed into the type
+	 */
+	private Object readValue(ValueType type) throws JSONException {
+		switch(reader.peek()) {
+		case BEGIN_OBJECT:
+			if(type.kind == ValueType.Kind.OBJECT) {
+				// Codecs generated at compile time are always preferred
+				JSONCodec<?> codec = JSONCodec.of(type.rawType);
+				if(codec != null) return codec.read(reader);
+				if(generatedCodecs) {
+					MethodHandle read = GeneratedCodec.of(type.rawType).read;
+					if(read != null) return readGenerated(read);
 				}
-				break SWITCH;
-			default:
-				// All characters should be appended to the value StringBuilder
-				sb.append(c);
-				continue LOOP;
-			}
-			// If we've got here, a key or value is complete
-			if(isKey) {
-				key = StringValueOf(sb.toString());
-			} else {
-				pairs.put(key, sb.toString());
+				return readObject(type.binding());
 			}
-			isKey = !isKey;
-			// Empty the StringBuilder
-			sb.setLength(0);
+			if(type.kind == ValueType.Kind.MAP) return readMap(type);
+			throw new JSONException("Unexpected object for " + type.rawType.getCanonicalName());
+		case BEGIN_ARRAY:
+			if(type.kind == ValueType.Kind.COLLECTION) return readArray(type);
+			throw new JSONException("Unexpected array for " + type.rawType.getCanonicalName());
+		case NULL:
+			if(type.primitive) throw new JSONException("Null is not a valid value for " + type.rawType);
+			reader.nextNull();
+			return null;
+		default:
+			return readLiteral(type);
 		}
 	}
 	
-	private boolean hasNext() {
-		return next != -1;
+	/**
+	 * Read a string, number or boolean value of the given type
+	 * @param type the resolved type of the value
+	 * @return An Object of given type for the parsed value
+	 */
+	private Object readLiteral(ValueType type) throws JSONException {
+		switch(type.kind) {
+		case STRING:
+			return reader.nextString();
+		case BOOLEAN:
+			return reader.nextBoolean();
+		case BYTE:
+			return readByte();
+		case SHORT:
+			return readShort();
+		case INTEGER:
+			return reader.nextInt();
+		case LONG:
+			return reader.nextLong();
+		case FLOAT:
+			return reader.nextFloat();
+		case DOUBLE:
+			return reader.nextDouble();
+		case OBJECT:
+		case COLLECTION:
+		case MAP:
+			throw new JSONException("Unexpected value '" + reader.nextString() + "' for " + type.rawType.getCanonicalName());
+		default:
+			throw new JSONException(type.rawType.getCanonicalName() + " is not serializable");
+		}
 	}
 	
-	private char next() {
-		previous = current;
-		current = next;
-		try {
-			next = reader.read();
-		} catch ( IOException e ) {
-			throw new JSONException(e);
+	private byte readByte() throws JSONException {
+		int b = reader.nextInt();
+		if(b != (byte) b) throw new JSONException("Value " + b + " out of range for byte");
+		return (byte) b;
+	}
+	
+	private short readShort() throws JSONException {
+		int s = reader.nextInt();
+		if(s != (short) s) throw new JSONException("Value " + s + " out of range for short");
+		return (short) s;
+	}
+	
+	/**
+	 * Read an object and bind its attributes. If no constructor of the class
+	 * takes attributes, the object is instantiated first, and the values are
+	 * set directly. Otherwise the values are collected in their slots until
+	 * the object can be instantiated.
+	 * @param binding the binding plan for the class
+	 * @return the decoded object
+	 */
+	private <V> V readObject(ClassBinding<V> binding) throws JSONException {
+		boolean buffered = binding.buffered;
+		V obj = buffered ? null : binding.newInstance();
+		Object[] values = buffered ? new Object[binding.slotCount()] : null;
+		boolean[] present = (buffered || binding.hasRequired) ? new boolean[binding.slotCount()] : null;
+		
+		// Most input has the attributes in the same order as the class
+		int expected = binding.firstSlot;
+		reader.beginObject();
+		while(reader.hasNext()) {
+			int index = reader.nextName(binding.names, expected);
+			if(index < 0) {
+				// Attributes that are not bound are skipped
+				reader.skipValue();
+				continue;
+			}
+			Slot slot = binding.slot(index);
+			expected = binding.nextSlot(index);
+			if(present != null) present[slot.index] = true;
+			if(buffered) {
+				values[slot.index] = readValue(slot.type);
+			} else {
+				readProperty(slot.property, obj);
+			}
+		}
+		reader.endObject();
+		
+		if(buffered) obj = create(binding, values, present);
+		for (Property property : binding.properties) {
+			// Final fields are set through the constructor
+			if (!property.writable) continue;
+			if (present != null && !present[property.slot]) {
+				// If no value is available and the field is required, throw an exception
+				if(property.required)
+					throw new JSONException("Field " + property.name + " was required but undefined in input string");
+			} else if (buffered) {
+				set(property, obj, values[property.slot]);
+			}
 		}
-		return (char) current;
+		return obj;
 	}
 	
-	private char previous() {
-		return (char) previous;
+	/**
+	 * Read an object through a generated codec
+	 * @param read the read handle of the codec
+	 * @return the decoded object
+	 */
+	private Object readGenerated(MethodHandle read) throws JSONException {
+		try {
+			return (Object) read.invokeExact(reader);
+		} catch ( JSONException e ) {
+			throw e;
+		} catch ( Throwable e ) {
+			throw new JSONException(e);
+		}
 	}
 	
-	private T decode() throws JSONException {
+	/**
+	 * Iterate through the constructors and look for a constructor that matches
+	 * our data
+	 * @param binding the binding plan for the class
+	 * @param values the collected values
+	 * @param present whether a value was found for a slot
+	 * @return the new instance
+	 */
+	private static <V> V create(ClassBinding<V> binding, Object[] values, boolean[] present) throws JSONException {
 		try {
-			T obj = null;
-			// Get the constructors for the wrapper
-			@SuppressWarnings("unchecked") Constructor<T>[] constructors = (Constructor<T>[]) klass.getConstructors();
-			// Sort the constructors, the one with the most variables first
-			Arrays.sort(constructors, new Comparator<Constructor<?>>() {
-				@Override
-				public int compare(Constructor<?> o1, Constructor<?> o2) {
-					return o2.getParameterTypes().length - o1.getParameterTypes().length;
-				}
-			});
-			// Iterate through the constructors and look for a constructor that matches our data
-			CTORS : for ( Constructor<T> c : constructors ) {
-				Class<?>[] parameterClasses = c.getParameterTypes();
-				Type[] parameterTypes = c.getGenericParameterTypes();
-				Annotation[][] annotations = c.getParameterAnnotations();
-				int l = parameterClasses.length;
+			CTORS : for ( Creator<V> c : binding.creators ) {
+				if(c.error != null) throw new JSONException(c.error);
+				Parameter[] parameters = c.parameters;
+				int l = parameters.length;
 				// Create an array that will contains the argument with which the constructor will be invoked
 				Object[] arguments = new Object[l];
-				// Iterate over the parameters
-				PARAMS : for(int i = 0; i < l; i++ ) {
-					String name = null;					
-					// Fetch the annotations for the constructor parameters
-					// We can only use CTORS with annotated parameters
-					int m = annotations[i].length;
-					if ( m == 0 ) continue CTORS;
-					for(int j = 0; j < m; j++ ) {
-						Annotation a = annotations[i][j];
-						if(a instanceof JSONAttribute ) {
-							JSONAttribute annotation = (JSONAttribute) a;
-							// Because constructor parameter names are lost after compilation,
-							// constructor parameters need to specify their attribute name in the annotation
-							name = ((JSONAttribute) a).name();
-							if(name.equals(EMPTY_STRING)) throw new JSONException("Attribute name should be specified for constructor parameters");
-							// Check if this field can be filled based on the input
-							String strvalue = pairs.get(name);
-							// Skip to the next constructor if no value could be found
-							if(strvalue == null && annotation.required()) continue CTORS;
-							arguments[i] = strToValue(parameterClasses[i], parameterTypes[i], strvalue);
-							// The annotation is found, skip to the next parameter
-							continue PARAMS;
-						}
-					}
-					// If we get here the JSONAttribute was not set
-					continue CTORS;
+				for(int i = 0; i < l; i++ ) {
+					Parameter parameter = parameters[i];
+					// Skip to the next constructor if no value could be found
+					if(!present[parameter.slot] && parameter.required) continue CTORS;
+					arguments[i] = values[parameter.slot];
 				}
 				// If we get here, all required parameters could be filled
-				c.setAccessible(true);
-				obj = c.newInstance(arguments);
-				break;
+				return c.constructor.newInstance(arguments);
 			}
-			// Use the default constructor if no other constructor was available
-			if(constructors.length == 0 ) obj = klass.newInstance();
-			// If the object is still null, throw an exception
-			if(obj == null) throw new JSONException(klass.getCanonicalName() + " could not be instantiated");
-			
-			for (Field f : klass.getDeclaredFields()) {
-				// The field should have the JSONAttribute annotation and not have the final modifier
-				if (f.isAnnotationPresent(JSONAttribute.class) && !Modifier.isFinal(f.getModifiers())) {
-					JSONAttribute annotation = f.getAnnotation(JSONAttribute.class);
-					// Fetch the attribute name at which the value can be found in the JSON input
-					// If no value is defined in the annotation, use the field name in the class
-					String name = annotation.name();
-					if(name.equals(EMPTY_STRING)) name = f.getName();
-					// Fetch the value, if no value is available and the field is required, throw an exception
-					String strvalue = pairs.get(name);
-					if(strvalue == null ) {
-						if(annotation.required())
-							throw new JSONException("Field " + name + " was required but undefined in input string");
-					} else {
-						f.setAccessible(true);
-						f.set(obj, strToValue(f.getType(), f.getGenericType(), strvalue));
-					}
-				}
-			}
-	
-			return obj;
 		} catch ( JSONException e ) {
 			throw e; // Forward parse exceptions
 		} catch ( Exception e ) {
 			throw new JSONException(e); // Wrap all other exceptions (reflection exceptions basically)
 		}
+		throw new JSONException(binding.klass.getCanonicalName() + " could not be instantiated");
 	}
-
+	
 	/**
-	 * Convert a JSON String value to an Object
-	 * @param klass
-	 * @param type
-	 * @param strvalue
-	 * @return An Object of given type for the parsed String
-	 * @throws InstantiationException
-	 * @throws IllegalAccessException
-	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static <V> V strToValue(Class<V> klass, Type type, String strvalue) throws InstantiationException, IllegalAccessException {
-		if(strvalue == null) {
-			return null;
-		} else if(klass.equals(String.class)) {
-			return (V) StringValueOf(strvalue);
-		} else if (klass.equals(Boolean.class) || klass.equals(boolean.class)) {
-			return (V) BooleanValueOf(strvalue);
-		} else if (klass.equals(Byte.class) || klass.equals(byte.class)) {
-			return (V) ByteValueOf(strvalue);
-		} else if ( klass.equals(Short.class) || klass.equals(short.class)) {
-			return (V) ShortValueOf(strvalue);
-		} else if (klass.equals(Integer.class) || klass.equals(int.class)) {
-			return (V) IntegerValueOf(strvalue);
-		} else if (klass.equals(Long.class) || klass.equals(long.class)) {
-			return (V) LongValueOf(strvalue);
-		} else if (klass.equals(Float.class) || klass.equals(float.class)) {
-			return (V) FloatValueOf(strvalue);
-		} else if (klass.equals(Double.class) || klass.equals(double.class)) {
-			return (V) DoubleValueOf(strvalue);
-		} else if( JSONSerializable.class.isAssignableFrom(klass)) {
-			return (V) decode((Class<? extends JSONSerializable>) klass, strvalue);
-		} else if ( Collection.class.isAssignableFrom(klass)) {
-			Class<?> valueClass = (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[0];
-			return (V) getArray((Class<? extends Collection>) klass, valueClass, strvalue);
-		} else if ( Map.class.isAssignableFrom(klass)) {
-			Class<?> valueClass = (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[1];
-			return (V) getMap((Class<? extends Map>) klass, valueClass, strvalue);
-		} else {
-			throw new JSONException(klass.getCanonicalName() + " is not serializable");
+	 * Read the value of a property and set it on the object. Primitive values
+	 * are passed to the setter without boxing.
+	 * @param property the property
+	 * @param obj the object
+	 */
+	private void readProperty(Property property, Object obj) throws JSONException {
+		ValueType type = property.type;
+		try {
+			if(property.unboxed) {
+				if(reader.peek() == JSONToken.NULL)
+					throw new JSONException("Null is not a valid value for " + type.rawType);
+				switch(type.kind) {
+				case BOOLEAN:
+					property.setter.invokeExact(obj, reader.nextBoolean());
+					return;
+				case BYTE:
+					property.setter.invokeExact(obj, readByte());
+					return;
+				case SHORT:
+					property.setter.invokeExact(obj, readShort());
+					return;
+				case INTEGER:
+					property.setter.invokeExact(obj, reader.nextInt());
+					return;
+				case LONG:
+					property.setter.invokeExact(obj, reader.nextLong());
+					return;
+				case FLOAT:
+					property.setter.invokeExact(obj, reader.nextFloat());
+					return;
+				case DOUBLE:
+					property.setter.invokeExact(obj, reader.nextDouble());
+					return;
+				default:
+					break;
+				}
+			}
+			property.setter.invokeExact(obj, readValue(type));
+		} catch ( JSONException e ) {
+			throw e;
+		} catch ( Throwable e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	private static void set(Property property, Object obj, Object value) throws JSONException {
+		try {
+			property.boxedSetter.invokeExact(obj, value);
+		} catch ( Throwable e ) {
+			throw new JSONException(e);
 		}
 	}
 	
 	/**
-	 * Instantiate a new {@code Collection} based on the given implementation and generic type
-	 * valueClass, and fill it with values parsed from the input string. 
-	 * @param klass {@code Class} for the {@code Collection} implementation
-	 * @param valueClass {@code Class} for the values in the collection
-	 * @param input JSONString containing the array and it's values
+	 * Instantiate a new {@code Collection} based on the given type, and fill it
+	 * with the values of the JSON array.
+	 * @param type the resolved type of the {@code Collection}
 	 * @return the newly instantiated Collection
-	 * @throws InstantiationException If the collection could not be instantiated
-	 * @throws IllegalAccessException If no elements can be added to the collection
-	 */
-	private static <T extends Collection<V>, V> T getArray(Class<T> klass, Class<V> valueClass, String input) throws InstantiationException, IllegalAccessException {
-		@SuppressWarnings("unchecked") T instance = (klass.isInterface()) ? (T) new ArrayList<V>(): klass.newInstance();
-		Decoder<JSONSerializable> decoder = new Decoder<JSONSerializable>(JSONSerializable.class, input);
-		for(String strvalue : decoder.arrayContents ) {
-			instance.add(strToValue(valueClass, null, strvalue));
+	 */
+	private Collection<Object> readArray(ValueType type) throws JSONException {
+		ValueType valueType = elementType(type);
+		@SuppressWarnings("unchecked") Collection<Object> instance = (Collection<Object>) type.newInstance();
+		reader.beginArray();
+		while(reader.hasNext()) {
+			instance.add(readValue(valueType));
 		}
+		reader.endArray();
 		return instance;
 	}
 	
 	/**
-	 * Instantiate a new {@code Map} based on the given implementation.
-	 * @param klass Implementation for the map
-	 * @param valueClass Implementation for the values
-	 * @param input JSONString containing the map and it's key value pairs
+	 * Instantiate a new {@code Map} based on the given type, and fill it with
+	 * the key value pairs of the JSON object.
+	 * @param type the resolved type of the {@code Map}
 	 * @return the newly instantiated Map
-	 * @throws InstantiationException If the map could not be instantiated
-	 * @throws IllegalAccessException If no key value pairs could be added
-	 */
-	private static <T extends Map<String, V>, V> T getMap(Class<T> klass, Class<V> valueClass, String input) throws InstantiationException, IllegalAccessException {
-		@SuppressWarnings("unchecked") T instance = (klass.isInterface()) ? (T) new HashMap<String, V>() : klass.newInstance();
-		Decoder<JSONSerializable> decoder = new Decoder<JSONSerializable>(JSONSerializable.class, input);
-		for( Entry<String, String> entry : decoder.pairs.entrySet() ) {
-			instance.put(entry.getKey(), strToValue(valueClass, null, entry.getValue()));
+	 */
+	private Map<String, Object> readMap(ValueType type) throws JSONException {
+		ValueType valueType = elementType(type);
+		@SuppressWarnings("unchecked") Map<String, Object> instance = (Map<String, Object>) type.newInstance();
+		reader.beginObject();
+		while(reader.hasNext()) {
+			String key = reader.nextName();
+			instance.put(key, readValue(valueType));
 		}
+		reader.endObject();
 		return instance;
 	}
-
+	
 	/**
-	 * Get an escaped String ValueOf from input
-	 * @param s
-	 * @return the String value of escaped String value of the characters
-	 *         between quotes
+	 * @param type the resolved type of a {@code Collection} or {@code Map}
+	 * @return the type of the values
+	 * @throws JSONException if the type of the values is unknown
 	 */
-	static String StringValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL))
-			return null;
-		int l = s.length();
-		char start = 0;
-		StringBuilder sb = new StringBuilder(l);
-		CHARS : for(int i = 0; i < l; i++ ) {
-			char c = s.charAt(i);
-			switch(c) {
-			case ' ':
-				if(start == 0) {
-					// Skip if begin of String, return if end
-					if(sb.length() > 0) {
-						break CHARS;
-					}
-				} else {
-					// Append spaces only if wrapped between quotes
-					sb.append(c);
-				}
-				break;
-			case '"':
-			case '\'':
-				if(sb.length() == 0 ) {
-					// This quote marks the start of the String,
-					// set the start char to the current char
-					start = c;
-				} else if ( c == start ) {
-					// If equal to the start char, the end of the String
-					// is reached
-					break CHARS;
-				} else {
-					// If not equal to the start char, append
-					// it to the String
-					sb.append(c);
-				}
-				break;
-			case '\\':
-				if(i < l) {
-					// Append escaped character
-					char next = s.charAt(++i);
-					sb.append(next);
-				} else {
-					sb.append(c);
-				}
-				break;
-			default:
-				// Append the character
-				sb.append(c);
-				break;
-			}
-		}
-		return sb.toString();
+	private static ValueType elementType(ValueType type) throws JSONException {
+		if(type.elementType == null)
+			throw new JSONException("Value type of " + type.rawType.getCanonicalName() + " could not be determined");
+		return type.elementType;
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Boolean value of a JSON fragment
+	 * Configure a reader that is created by the decoder
+	 * @param reader the reader
+	 * @return the reader
 	 */
-	static Boolean BooleanValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
-		return Boolean.valueOf(s);
+	private static JSONReader reader(JSONReader reader) {
+		reader.setStringCache(stringCache);
+		return reader;
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Byte value of a JSON fragment
+	 * Create a reader for a memory mapped file
+	 * @param path the path of the file
+	 * @return the reader
+	 * @throws IOException if the file could not be opened
 	 */
-	static Byte ByteValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
-		try {
-			return Byte.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
-		}
+	private static JSONReader reader(Path path) throws IOException {
+		return reader(new JSONReader(path, bufferSize, JSONReader.DEFAULT_WINDOW_SIZE));
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Short value of a JSON fragment
+	 * Decode a JSON string
+	 * @param entrypoint the main wrapper class
+	 * @param input the JSON input string
+	 * @return deserialized instance of class
+	 * @throws JSONException
 	 */
-	static Short ShortValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
-		try {
-			return Short.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
-		}
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, String input) throws JSONException {
+		return new Decoder<T>(entrypoint, reader(new JSONReader(input))).decodeDocument();
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Integer value of a JSON fragment
+	 * Decode a JSON string
+	 * @param entrypoint the main wrapper class
+	 * @param io InputStream with UTF-8 encoded input
+	 * @return deserialized instance of class
+	 * @throws JSONException
 	 */
-	static Integer IntegerValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
-		try {
-			return Integer.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
-		}
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, InputStream io) throws JSONException {
+		return new Decoder<T>(entrypoint, reader(new JSONReader(io, bufferSize))).decodeDocument();
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Long value of a JSON fragment
+	 * Decode UTF-8 encoded JSON. The bytes are read in place, without copying
+	 * the input into an intermediate buffer.
+	 * @param entrypoint the main wrapper class
+	 * @param input the UTF-8 encoded JSON input
+	 * @return deserialized instance of class
+	 * @throws JSONException
 	 */
-	static Long LongValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
-		try {
-			return Long.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
-		}
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, byte[] input) throws JSONException {
+		return decode(entrypoint, input, 0, input.length);
 	}
-
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Float value of a JSON fragment
+	 * Decode UTF-8 encoded JSON from a range of a byte array
+	 * @param entrypoint the main wrapper class
+	 * @param input the UTF-8 encoded JSON input
+	 * @param off the index of the first byte of the document
+	 * @param len the length of the document in bytes
+	 * @return deserialized instance of class
+	 * @throws JSONException
 	 */
-	static Float FloatValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, byte[] input, int off, int len) throws JSONException {
+		return new Decoder<T>(entrypoint, reader(new JSONReader(input, off, len))).decodeDocument();
+	}
+	
+	/**
+	 * Decode a UTF-8 encoded JSON file. The file is memory mapped in
+	 * windows, also when it is larger than 2 GB, and blocks of the mapped
+	 * bytes are copied into the heap buffer of the reader.
+	 * @param entrypoint the main wrapper class
+	 * @param path the path of the file
+	 * @return deserialized instance of class
+	 * @throws JSONException
+	 * @throws IOException if the file could not be opened
+	 */
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, Path path) throws JSONException, IOException {
+		JSONReader reader = reader(path);
 		try {
-			return Float.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
+			return new Decoder<T>(entrypoint, reader).decodeDocument();
+		} finally {
+			reader.close();
 		}
 	}
-
+	
+	/**
+	 * Decode the next value of a {@code JSONReader}. This can be used to bind
+	 * only a part of a document, while the rest is read or skipped through
+	 * the reader.
+	 * @param entrypoint the main wrapper class
+	 * @param reader JSONReader positioned before the value
+	 * @return deserialized instance of class
+	 * @throws JSONException
+	 */
+	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, JSONReader reader) throws JSONException {
+		return new Decoder<T>(entrypoint, reader).decode();
+	}
+	
 	/**
-	 * @param s JSON fragment
-	 * @return Double value of a JSON fragment
+	 * Decode the elements of a JSON array one at a time, while the input is
+	 * read. This can be used for arrays that do not fit in memory.
+	 * @param elementType the class of the elements
+	 * @param io InputStream with UTF-8 encoded input
+	 * @return an iterator over the decoded elements
+	 * @throws JSONException if the input does not start with an array
 	 */
-	static Double DoubleValueOf(String s) {
-		if(s.equalsIgnoreCase(NULL)) return null;
+	public static <T extends JSONSerializable> JSONIterator<T> iterator(Class<T> elementType, InputStream io) throws JSONException {
+		return new JSONIterator<T>(elementType, reader(new JSONReader(io, bufferSize)), false);
+	}
+	
+	/**
+	 * Decode the elements of a JSON array one at a time
+	 * @param elementType the class of the elements
+	 * @param input the JSON input string
+	 * @return an iterator over the decoded elements
+	 * @throws JSONException if the input does not start with an array
+	 */
+	public static <T extends JSONSerializable> JSONIterator<T> iterator(Class<T> elementType, String input) throws JSONException {
+		return new JSONIterator<T>(elementType, reader(new JSONReader(input)), false);
+	}
+	
+	/**
+	 * Decode the elements of a JSON array in a memory mapped file one at a
+	 * time. The iterator should be closed to close the file.
+	 * @param elementType the class of the elements
+	 * @param path the path of a file with UTF-8 encoded input
+	 * @return an iterator over the decoded elements
+	 * @throws JSONException if the input does not start with an array
+	 * @throws IOException if the file could not be opened
+	 */
+	public static <T extends JSONSerializable> JSONIterator<T> iterator(Class<T> elementType, Path path) throws JSONException, IOException {
+		JSONReader reader = reader(path);
 		try {
-			return Double.valueOf(s);
-		} catch (NumberFormatException e ) {
-			throw new JSONException(e);
+			return new JSONIterator<T>(elementType, reader, false);
+		} catch ( JSONException e ) {
+			reader.close();
+			throw e;
 		}
 	}
 	
 	/**
-	 * Decode a JSON string
-	 * @param entrypoint the main wrapper class
+	 * Decode a JSON array into a list
+	 * @param elementType the class of the elements
 	 * @param input the JSON input string
-	 * @return deserialized instance of class
+	 * @return the decoded elements
 	 * @throws JSONException
 	 */
-	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, String input) throws JSONException {
-		return new Decoder<T>(entrypoint, input).decode();
+	public static <T extends JSONSerializable> List<T> decodeList(Class<T> elementType, String input) throws JSONException {
+		return toList(iterator(elementType, input));
 	}
 	
 	/**
-	 * Decode a JSON string
-	 * @param entrypoint the main wrapper class
-	 * @param io InputStream 
-	 * @return deserialized instance of class
+	 * Decode a JSON array into a list
+	 * @param elementType the class of the elements
+	 * @param io InputStream with UTF-8 encoded input
+	 * @return the decoded elements
 	 * @throws JSONException
 	 */
-	public static <T extends JSONSerializable> T decode(Class<T> entrypoint, InputStream io) throws JSONException {
-		return new Decoder<T>(entrypoint, io).decode();
+	public static <T extends JSONSerializable> List<T> decodeList(Class<T> elementType, InputStream io) throws JSONException {
+		return toList(iterator(elementType, io));
+	}
+	
+	/**
+	 * Decode the records of a JSON Lines (NDJSON) input one at a time, while
+	 * the input is read. The records are read by a single reader, so its
+	 * buffers are reused between records.
+	 * @param recordType the class of the records
+	 * @param io InputStream with UTF-8 encoded input
+	 * @return an iterator over the decoded records
+	 */
+	public static <T extends JSONSerializable> JSONIterator<T> lines(Class<T> recordType, InputStream io) {
+		return new JSONIterator<T>(recordType, reader(new JSONReader(io, bufferSize)), true);
+	}
+	
+	/**
+	 * Decode the records of a JSON Lines (NDJSON) string one at a time
+	 * @param recordType the class of the records
+	 * @param input the JSON Lines input string
+	 * @return an iterator over the decoded records
+	 */
+	public static <T extends JSONSerializable> JSONIterator<T> lines(Class<T> recordType, String input) {
+		return new JSONIterator<T>(recordType, reader(new JSONReader(input)), true);
+	}
+	
+	/**
+	 * Decode the records of a memory mapped JSON Lines (NDJSON) file one at
+	 * a time. The iterator should be closed to close the file.
+	 * @param recordType the class of the records
+	 * @param path the path of a file with UTF-8 encoded input
+	 * @return an iterator over the decoded records
+	 * @throws IOException if the file could not be opened
+	 */
+	public static <T extends JSONSerializable> JSONIterator<T> lines(Class<T> recordType, Path path) throws IOException {
+		return new JSONIterator<T>(recordType, reader(path), true);
+	}
+	
+	/**
+	 * Decode the records of a part of a UTF-8 encoded JSON Lines input
+	 * @param recordType the class of the records
+	 * @param input the input
+	 * @param off the offset of the first byte
+	 * @param len the amount of bytes
+	 * @return an iterator over the decoded records
+	 */
+	static <T extends JSONSerializable> JSONIterator<T> lines(Class<T> recordType, byte[] input, int off, int len) {
+		return new JSONIterator<T>(recordType, reader(new JSONReader(input, off, len)), true);
+	}
+	
+	private static <T extends JSONSerializable> List<T> toList(JSONIterator<T> iterator) throws JSONException {
+		List<T> list = new ArrayList<T>();
+		while(iterator.hasNext())
+			list.add(iterator.next());
+		return list;
 	}
 }
@@ -0,0 +1,554 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+/**
+ * Conversion between floating point numbers and their decimal
+ * representation in UTF-8 bytes, without creating intermediate Strings.
+ * <p>
+ * Parsing uses the algorithm by Eisel and Lemire, described in "Number
+ * Parsing at a Gigabyte per Second" by Daniel Lemire. Numbers with more than
+ * 19 significant digits, subnormal numbers and numbers of which the rounding
+ * cannot be determined are parsed by {@code Double.parseDouble} instead.
+ * <p>
+ * Formatting uses the Schubfach algorithm, described in "The Schubfach way to
+ * render doubles" by Raffaello Giulietti. It writes the shortest decimal that
+ * rounds to the same value, in the same layout as {@code Double.toString}.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+final class DoubleConversion {
+	
+	private final static Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	/**
+	 * The maximum amount of bytes written for a single value
+	 */
+	final static int MAX_LENGTH = 32;
+	
+	/*
+	 * Range of the 128 bit approximations of the powers of ten used for
+	 * parsing
+	 */
+	private final static int POW10_MIN = -342;
+	private final static int POW10_MAX = 308;
+	
+	/*
+	 * Range of the 126 bit approximations of the powers of ten used for
+	 * formatting
+	 */
+	private final static int G_MIN = -324;
+	private final static int G_MAX = 292;
+	
+	private final static long MASK_63 = 0x7FFFFFFFFFFFFFFFL;
+	
+	/**
+	 * The upper and lower 64 bits of the mantissa of every power of ten in
+	 * the range [{@code POW10_MIN}, {@code POW10_MAX}]. Negative powers are
+	 * rounded up, the others are rounded down.
+	 */
+	private final static long[] POW10_HI = new long[POW10_MAX - POW10_MIN + 1];
+	private final static long[] POW10_LO = new long[POW10_MAX - POW10_MIN + 1];
+	
+	/**
+	 * For every k in [{@code G_MIN}, {@code G_MAX}], the upper 63 bits and
+	 * the lower 63 bits of g = floor(10^-k 2^-r) + 1, where r is chosen
+	 * such that 2^125 &lt;= g &lt; 2^126
+	 */
+	private final static long[] G1 = new long[G_MAX - G_MIN + 1];
+	private final static long[] G0 = new long[G_MAX - G_MIN + 1];
+	
+	/**
+	 * Powers of ten that are exactly representable as double
+	 */
+	private final static double[] DOUBLE_POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	/**
+	 * Powers of ten that are exactly representable as float
+	 */
+	private final static float[] FLOAT_POW10 = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+	
+	static {
+		BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		for(int q = POW10_MIN; q <= POW10_MAX; q++) {
+			BigInteger c;
+			if(q >= 0) {
+				// Truncate 5^q to 128 bits
+				BigInteger power = BigInteger.valueOf(5).pow(q);
+				int shift = power.bitLength() - 128;
+				c = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+			} else {
+				// Round 2^b / 5^-q up, and truncate it to 128 bits
+				BigInteger power = BigInteger.valueOf(5).pow(-q);
+				int z = power.bitLength();
+				c = BigInteger.ONE.shiftLeft(2 * z + 128).divide(power).add(BigInteger.ONE);
+				c = c.shiftRight(c.bitLength() - 128);
+			}
+			POW10_HI[q - POW10_MIN] = c.shiftRight(64).longValue();
+			POW10_LO[q - POW10_MIN] = c.and(mask).longValue();
+		}
+		BigInteger mask63 = BigInteger.valueOf(MASK_63);
+		for(int k = G_MIN; k <= G_MAX; k++) {
+			int shift = 125 - flog2pow10(-k);
+			BigInteger g;
+			if(k <= 0) {
+				BigInteger power = BigInteger.TEN.pow(-k);
+				g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+			} else {
+				g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+			}
+			g = g.add(BigInteger.ONE);
+			G1[k - G_MIN] = g.shiftRight(63).longValue();
+			G0[k - G_MIN] = g.and(mask63).longValue();
+		}
+	}
+	
+	private DoubleConversion() {
+		// Only static methods
+	}
+	
+	/**
+	 * Parse a double
+	 * @param b the bytes
+	 * @param off the offset of the number
+	 * @param len the length of the number
+	 * @return the double
+	 * @throws NumberFormatException if the number is malformed
+	 */
+	static double parseDouble(byte[] b, int off, int len) throws NumberFormatException {
+		long bits = parse(b, off, len, false);
+		if(bits == -1) return Double.parseDouble(new String(b, off, len, ISO_8859_1));
+		return Double.longBitsToDouble(bits);
+	}
+	
+	/**
+	 * Parse a float
+	 * @param b the bytes
+	 * @param off the offset of the number
+	 * @param len the length of the number
+	 * @return the float
+	 * @throws NumberFormatException if the number is malformed
+	 */
+	static float parseFloat(byte[] b, int off, int len) throws NumberFormatException {
+		long bits = parse(b, off, len, true);
+		if(bits == -1) return Float.parseFloat(new String(b, off, len, ISO_8859_1));
+		return Float.intBitsToFloat((int) bits);
+	}
+	
+	/**
+	 * Parse a number in JSON syntax
+	 * @return the bits of the double or float, or -1 if the number should be
+	 *         parsed by the JDK instead
+	 */
+	private static long parse(byte[] b, int off, int len, boolean single) {
+		int i = off, end = off + len;
+		boolean negative = false;
+		if(i < end && b[i] == '-') {
+			negative = true;
+			i++;
+		}
+		// Up to 19 significant digits fit in the mantissa
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean truncated = false;
+		int start = i;
+		for(; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+			if(digits < 19) {
+				mantissa = mantissa * 10 + (b[i] - '0');
+				if(mantissa != 0) digits++;
+			} else {
+				truncated |= b[i] != '0';
+				exponent++;
+			}
+		}
+		if(i == start) return -1;
+		if(i < end && b[i] == '.') {
+			start = ++i;
+			for(; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+				if(digits < 19) {
+					mantissa = mantissa * 10 + (b[i] - '0');
+					if(mantissa != 0) digits++;
+					exponent--;
+				} else {
+					truncated |= b[i] != '0';
+				}
+			}
+			if(i == start) return -1;
+		}
+		if(i < end && (b[i] == 'e' || b[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && (b[i] == '-' || b[i] == '+')) {
+				negativeExponent = b[i] == '-';
+				i++;
+			}
+			start = i;
+			int e = 0;
+			for(; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+				// Larger exponents are out of range anyway
+				if(e < 100000) e = e * 10 + (b[i] - '0');
+			}
+			if(i == start) return -1;
+			exponent += negativeExponent ? -e : e;
+		}
+		if(i != end) return -1;
+		
+		long sign = negative ? (single ? 0x80000000L : 0x8000000000000000L) : 0;
+		if(mantissa == 0) return sign;
+		// The mantissa is unsigned, because 19 digits may not fit in a long
+		if(!truncated && mantissa > 0) {
+			// Exact when both the mantissa and the power of ten are exact
+			if(single) {
+				if(mantissa <= 1 << 24 && exponent >= -10 && exponent <= 10) {
+					float f = mantissa;
+					f = exponent < 0 ? f / FLOAT_POW10[-exponent] : f * FLOAT_POW10[exponent];
+					return sign | (Float.floatToRawIntBits(f) & 0xFFFFFFFFL);
+				}
+			} else if(mantissa <= 1L << 53 && exponent >= -22 && exponent <= 22) {
+				double d = mantissa;
+				d = exponent < 0 ? d / DOUBLE_POW10[-exponent] : d * DOUBLE_POW10[exponent];
+				return sign | Double.doubleToRawLongBits(d);
+			}
+		}
+		long bits = single ? eiselLemire(mantissa, exponent, 23, 8) : eiselLemire(mantissa, exponent, 52, 11);
+		// The digits after the 19th are somewhere between the mantissa and the
+		// next integer, so both should round to the same value
+		if(truncated && bits != -1 && bits != (single ? eiselLemire(mantissa + 1, exponent, 23, 8)
+				: eiselLemire(mantissa + 1, exponent, 52, 11))) return -1;
+		if(bits == -1) return -1;
+		return sign | bits;
+	}
+	
+	/**
+	 * Compute the nearest floating point number to {@code mantissa 10^exponent}
+	 * @param mantissa a non-zero mantissa
+	 * @param exponent the decimal exponent
+	 * @param mantissaBits the amount of explicit mantissa bits, 52 or 23
+	 * @param exponentBits the amount of exponent bits, 11 or 8
+	 * @return the bits of the positive number, or -1 if it cannot be
+	 *         determined, or is subnormal or infinite
+	 */
+	private static long eiselLemire(long mantissa, int exponent, int mantissaBits, int exponentBits) {
+		if(exponent < POW10_MIN || exponent > POW10_MAX) return -1;
+		int index = exponent - POW10_MIN;
+		int bias = (1 << (exponentBits - 1)) - 1;
+		// The lower bits of the product that are discarded
+		int shift = 64 - mantissaBits - 3;
+		long mask = (1L << shift) - 1;
+		
+		int clz = Long.numberOfLeadingZeros(mantissa);
+		mantissa <<= clz;
+		// floor(exponent log2(10)) + 64 + bias - clz
+		long exp2 = ((217706 * exponent) >> 16) + 64 + bias - clz;
+		
+		long hi = unsignedMultiplyHigh(mantissa, POW10_HI[index]);
+		long lo = mantissa * POW10_HI[index];
+		if((hi & mask) == mask && lessThan(lo + mantissa, mantissa)) {
+			// The product may be too small, so the lower bits of the power
+			// of ten are taken into account as well
+			long yHi = unsignedMultiplyHigh(mantissa, POW10_LO[index]);
+			long yLo = mantissa * POW10_LO[index];
+			long mergedHi = hi, mergedLo = lo + yHi;
+			if(lessThan(mergedLo, lo)) mergedHi++;
+			if((mergedHi & mask) == mask && mergedLo + 1 == 0 && lessThan(yLo + mantissa, mantissa))
+				return -1;
+			hi = mergedHi;
+			lo = mergedLo;
+		}
+		
+		long msb = hi >>> 63;
+		long result = hi >>> (msb + shift);
+		exp2 -= 1 ^ msb;
+		// Exactly halfway between two numbers
+		if(lo == 0 && (hi & mask) == 0 && (result & 3) == 1) return -1;
+		
+		// Round to nearest, ties to even
+		result += result & 1;
+		result >>>= 1;
+		if(result >>> (mantissaBits + 1) != 0) {
+			result >>>= 1;
+			exp2++;
+		}
+		if(exp2 <= 0 || exp2 >= (1 << exponentBits) - 1) return -1;
+		return exp2 << mantissaBits | (result & ((1L << mantissaBits) - 1));
+	}
+	
+	/**
+	 * Write a double, in the same layout as {@code Double.toString}
+	 * @param v the double
+	 * @param b the buffer, with at least {@code MAX_LENGTH} bytes available
+	 * @param off the offset
+	 * @return the offset after the last written byte
+	 */
+	static int write(double v, byte[] b, int off) {
+		long bits = Double.doubleToRawLongBits(v);
+		long t = bits & 0xFFFFFFFFFFFFFL;
+		int bq = (int) (bits >>> 52) & 0x7FF;
+		if(bq == 0x7FF) return writeAscii(Double.toString(v), b, off);
+		if(bits < 0) b[off++] = '-';
+		if(bq != 0) {
+			// Normal value, v = c 2^q
+			int q = bq - 1075;
+			long c = 1L << 52 | t;
+			if(q < 0 && q > -53) {
+				// Integers are written directly
+				long f = c >> -q;
+				if(f << -q == c) return writeDecimal(f, 0, b, off);
+			}
+			return toDecimal(q, c, 0, 1L << 52, -1074, b, off);
+		}
+		if(t == 0) return writeAscii("0.0", b, off);
+		// Subnormal value, small ones are scaled for more precision
+		return t < 3 ? toDecimal(-1074, 10 * t, -1, 1L << 52, -1074, b, off)
+				: toDecimal(-1074, t, 0, 1L << 52, -1074, b, off);
+	}
+	
+	/**
+	 * Write a float, in the same layout as {@code Float.toString}
+	 * @param v the float
+	 * @param b the buffer, with at least {@code MAX_LENGTH} bytes available
+	 * @param off the offset
+	 * @return the offset after the last written byte
+	 */
+	static int write(float v, byte[] b, int off) {
+		int bits = Float.floatToRawIntBits(v);
+		int t = bits & 0x7FFFFF;
+		int bq = (bits >>> 23) & 0xFF;
+		if(bq == 0xFF) return writeAscii(Float.toString(v), b, off);
+		if(bits < 0) b[off++] = '-';
+		if(bq != 0) {
+			// Normal value, v = c 2^q
+			int q = bq - 150;
+			int c = 1 << 23 | t;
+			if(q < 0 && q > -24) {
+				// Integers are written directly
+				int f = c >> -q;
+				if(f << -q == c) return writeDecimal(f, 0, b, off);
+			}
+			return toDecimal(q, c, 0, 1L << 23, -149, b, off);
+		}
+		if(t == 0) return writeAscii("0.0", b, off);
+		// Subnormal value, small ones are scaled for more precision
+		return t < 8 ? toDecimal(-149, 10 * t, -1, 1L << 23, -149, b, off)
+				: toDecimal(-149, t, 0, 1L << 23, -149, b, off);
+	}
+	
+	/**
+	 * Find the shortest decimal in the rounding interval of {@code c 2^q},
+	 * and the closest one if there are several
+	 * @param q the binary exponent
+	 * @param c the significand
+	 * @param dk the decimal exponent by which c was scaled
+	 * @param cMin the smallest significand of a normal value
+	 * @param qMin the smallest binary exponent
+	 */
+	private static int toDecimal(int q, long c, int dk, long cMin, int qMin, byte[] b, int off) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if(c != cMin || q == qMin) {
+			// The values below and above are equally far away
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			// The value below is closer than the value above
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		long g1 = G1[k - G_MIN];
+		long g0 = G0[k - G_MIN];
+		
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+		
+		long s = vb >> 2;
+		if(s >= 100) {
+			// Try a decimal with one digit less: s / 10 = s 115292150460684698 2^-60
+			long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if(upin != wpin) return writeDecimal(upin ? sp10 : tp10, k + dk, b, off);
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if(uin != win) return writeDecimal(uin ? s : t, k + dk, b, off);
+		// Both are in the interval, so the one closest to v is chosen
+		long cmp = vb - (s + t << 1);
+		return writeDecimal(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, b, off);
+	}
+	
+	/**
+	 * Compute cp g 2^-127, rounded to odd
+	 */
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+	
+	/**
+	 * Write {@code f 10^e}. Values from 10^-3 up to 10^7 are written as
+	 * plain decimal, other values in scientific notation.
+	 */
+	private static int writeDecimal(long f, int e, byte[] b, int off) {
+		while(f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int n = digits(f);
+		// The exponent in scientific notation
+		int exponent = n + e - 1;
+		if(exponent >= 0 && exponent < 7) {
+			int integers = exponent + 1;
+			writeDigits(f, n, b, off);
+			if(n <= integers) {
+				off += n;
+				for(int i = n; i < integers; i++) b[off++] = '0';
+				b[off++] = '.';
+				b[off++] = '0';
+				return off;
+			}
+			// Move the fraction to make room for the point
+			System.arraycopy(b, off + integers, b, off + integers + 1, n - integers);
+			b[off + integers] = '.';
+			return off + n + 1;
+		} else if(exponent < 0 && exponent >= -3) {
+			b[off++] = '0';
+			b[off++] = '.';
+			for(int i = exponent + 1; i < 0; i++) b[off++] = '0';
+			writeDigits(f, n, b, off);
+			return off + n;
+		}
+		writeDigits(f, n, b, off + 1);
+		b[off] = b[off + 1];
+		b[off + 1] = '.';
+		if(n == 1) {
+			b[off + 2] = '0';
+			off += 3;
+		} else {
+			off += n + 1;
+		}
+		b[off++] = 'E';
+		if(exponent < 0) {
+			b[off++] = '-';
+			exponent = -exponent;
+		}
+		int m = digits(exponent);
+		writeDigits(exponent, m, b, off);
+		return off + m;
+	}
+	
+	/**
+	 * @return the amount of decimal digits of a positive number
+	 */
+	private static int digits(long f) {
+		int n = 1;
+		for(long p = 10; n < 19 && f >= p; p *= 10) n++;
+		return n;
+	}
+	
+	/**
+	 * Write the n digits of a positive number
+	 */
+	private static void writeDigits(long f, int n, byte[] b, int off) {
+		for(int i = off + n - 1; i >= off; i--) {
+			b[i] = (byte) ('0' + f % 10);
+			f /= 10;
+		}
+	}
+	
+	private static int writeAscii(String s, byte[] b, int off) {
+		for(int i = 0, l = s.length(); i < l; i++)
+			b[off++] = (byte) s.charAt(i);
+		return off;
+	}
+	
+	/**
+	 * @return floor(log10(2^e))
+	 */
+	private static int flog10pow2(int e) {
+		return (int) (e * 661971961083L >> 41);
+	}
+	
+	/**
+	 * @return floor(log10(3/4 2^e))
+	 */
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661971961083L + -274743187321L >> 41);
+	}
+	
+	/**
+	 * @return floor(log2(10^e))
+	 */
+	private static int flog2pow10(int e) {
+		return (int) (e * 913124641741L >> 38);
+	}
+	
+	/**
+	 * @return the upper 64 bits of the signed 128 bit product
+	 */
+	private static long multiplyHigh(long x, long y) {
+		long x1 = x >> 32, x2 = x & 0xFFFFFFFFL;
+		long y1 = y >> 32, y2 = y & 0xFFFFFFFFL;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = t & 0xFFFFFFFFL;
+		long z0 = t >> 32;
+		z1 += x2 * y1;
+		return x1 * y1 + z0 + (z1 >> 32);
+	}
+	
+	/**
+	 * @return the upper 64 bits of the unsigned 128 bit product
+	 */
+	private static long unsignedMultiplyHigh(long x, long y) {
+		return multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+	
+	/**
+	 * @return true if x &lt; y, compared as unsigned numbers
+	 */
+	private static boolean lessThan(long x, long y) {
+		return x + Long.MIN_VALUE < y + Long.MIN_VALUE;
+	}
+	
+}
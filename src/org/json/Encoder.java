@@ -27,15 +27,13 @@ package org.json;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.StringWriter;
-import java.io.Writer;
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.json.JSONAttribute;
+import org.json.ClassBinding.Property;
 
 /**
  * The encoder is used to convert JSONSerializable classes to a JSON string
@@ -44,8 +42,13 @@ import org.json.JSONAttribute;
  */
 public class Encoder {
 
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	
 	private static int DEFAULT_INDENT = 0;
-	private static boolean IS_INDENT = false;
+	/**
+	 * True if objects are encoded through codecs generated at runtime
+	 */
+	private static volatile boolean generatedCodecs = false;
 	
 	/**
 	 * Set the indentation
@@ -54,10 +57,21 @@ public class Encoder {
 	public static void setIndent(int amount) {
 		if(amount >= 0) {
 			DEFAULT_INDENT = amount;
-			IS_INDENT = amount != 0;
 		}
 	}
 	
+	/**
+	 * Encode objects through classes that are generated at runtime for every
+	 * {@code JSONSerializable} class, instead of through reflection. Classes
+	 * for which no codec can be generated, for example because they have
+	 * non-public attributes, are still encoded through reflection.
+	 * The setting applies to all encoders, also on other threads.
+	 * @param enabled true to generate codecs
+	 */
+	public static void setGeneratedCodecs(boolean enabled) {
+		generatedCodecs = enabled;
+	}
+	
 	/**
 	 * Encode a JSONSerializable object to a JSON String
 	 * @param obj JSONSerializable object to be serialized
@@ -65,181 +79,242 @@ public class Encoder {
 	 * @throws JSONException
 	 */
 	public static String encode(JSONSerializable obj) throws JSONException {
+		return new String(encodeToBytes(obj), UTF_8);
+	}
+	
+	/**
+	 * Encode a JSONSerializable object to UTF-8 encoded JSON
+	 * @param obj JSONSerializable object to be serialized
+	 * @return the UTF-8 encoded JSON
+	 * @throws JSONException
+	 */
+	public static byte[] encodeToBytes(JSONSerializable obj) throws JSONException {
 		try {
-			return encode(new StringWriter(), obj, 0).toString();
+			JSONWriter w = new JSONWriter(DEFAULT_INDENT);
+			encode(w, obj);
+			return w.toByteArray();
 		} catch ( IOException e ) {
-			// Unlikely to ever happen since we're using a StringWriter
-			return "";
+			// Unlikely to ever happen since the writer has no sink
+			throw new JSONException(e);
 		}
 	}
 	
 	/**
-	 * Encode a JSONSErializable object and write it to an OutputStream
+	 * Encode a JSONSErializable object and write it as UTF-8 to an
+	 * OutputStream. The output is buffered, and the stream is flushed
+	 * but not closed afterwards.
 	 * @param io OutputStream
 	 * @param obj JSONSerializable object to be serialized
 	 * @throws JSONException
 	 * @throws IOException
 	 */
 	public static void encode(OutputStream io, JSONSerializable obj)  throws JSONException, IOException {
-		encode(new OutputStreamWriter(io), obj, 0);
+		JSONWriter w = new JSONWriter(io, DEFAULT_INDENT);
+		encode(w, obj);
+		w.flush();
+	}
+
+	/**
+	 * Encode JSONSerializable objects as JSON Lines (NDJSON), one object per
+	 * line, and write them as UTF-8 to an OutputStream. All objects are
+	 * written through the same buffer, which is written to the stream when
+	 * it is full. The output is never indented. The stream is flushed but
+	 * not closed afterwards.
+	 * <p>
+	 * The library only requires Java 7, so a {@code java.util.stream.Stream}
+	 * is passed through its iterator, which is only consumed once:
+	 * <pre>
+	 * Encoder.encodeLines(io, stream::iterator);
+	 * </pre>
+	 * @param io OutputStream
+	 * @param objects JSONSerializable objects to be serialized
+	 * @throws JSONException
+	 * @throws IOException
+	 */
+	public static <T extends JSONSerializable> void encodeLines(OutputStream io, Iterable<T> objects) throws JSONException, IOException {
+		JSONWriter w = new JSONWriter(io, 0);
+		w.setMultipleDocuments(true);
+		for (JSONSerializable obj : objects) {
+			encode(w, obj);
+		}
+		w.flush();
 	}
 
 	/**
-	 * 
-	 * @param w
-	 * @param obj
-	 * @param indent
-	 * @return
+	 * Encode a JSONSerializable object as the next value of a
+	 * {@code JSONWriter}. This can be used to write objects as part of a
+	 * larger document.
+	 * @param w JSONWriter
+	 * @param obj JSONSerializable object to be serialized
+	 * @throws JSONException
 	 * @throws IOException
 	 */
-	private static Writer encode(Writer w, JSONSerializable obj, int indent) throws JSONException, IOException {
-		w.append('{');
-		int newIndent = (IS_INDENT) ? indent + DEFAULT_INDENT : 0;
-		boolean separate = false;
-		// For every field in the class
-		for (Field field : obj.getClass().getDeclaredFields()) {
-			// Field should have the JSONAttribute annotation
-			if (field.isAnnotationPresent(JSONAttribute.class)) {
-				// Separate keys with commas
-				if (separate) w.append(',');
-				separate = true;
-				// Set accessibility
-				field.setAccessible(true);
-				// Fetch the name from the annotation or inherit from the field name
-				JSONAttribute annotation = field.getAnnotation(JSONAttribute.class);
-				String name = annotation.name();
-				if (name.equals("")) name = field.getName();
-				// Append the field name to the JSON String
-				if(IS_INDENT) {
-					w.append('\n');
-					indent(w, newIndent);
-				}
-				writeString(w, name);
-				if(IS_INDENT) w.append(' ');
-				w.append(':');
-				if(IS_INDENT) w.append(' ');
-				// Fetch the field type
-				Class<?> type = field.getType();
-				try {
-					Object value = field.get(obj);
-					writeObject(w, type, value, indent);
-				} catch ( IllegalAccessException e ) {
-					throw new JSONException(e);
-				}
+	public static void encode(JSONWriter w, JSONSerializable obj) throws JSONException, IOException {
+		if (obj == null) {
+			w.nullValue();
+			return;
+		}
+		// Codecs generated at compile time are always preferred
+		@SuppressWarnings("unchecked")
+		JSONCodec<JSONSerializable> codec = (JSONCodec<JSONSerializable>) JSONCodec.of(obj.getClass());
+		if (codec != null) {
+			codec.write(w, obj);
+			return;
+		}
+		if (generatedCodecs) {
+			MethodHandle write = GeneratedCodec.of(obj.getClass()).write;
+			if (write != null) {
+				writeGenerated(w, write, obj);
+				return;
 			}
 		}
-		if(IS_INDENT) {
-			w.append('\n');
-			indent(w, indent);
+		w.beginObject();
+		// For every annotated field and getter in the class
+		for (Property property : ClassBinding.of(obj.getClass()).properties) {
+			if (property.getter == null) continue;
+			w.encodedName(property.encodedName, property.prettyEncodedName);
+			writeProperty(w, property, obj);
 		}
-		w.append('}');
-		return w;
+		w.endObject();
+	}
+	
+	/**
+	 * Write an object through a generated codec
+	 * @param w JSONWriter instance
+	 * @param write the write handle of the codec
+	 * @param obj the object
+	 * @throws IOException
+	 */
+	private static void writeGenerated(JSONWriter w, MethodHandle write, Object obj) throws IOException {
+		try {
+			write.invokeExact(obj, w);
+		} catch ( IOException e ) {
+			throw e;
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Throwable e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * Write the value of a property. Primitive values are read from the
+	 * getter without boxing.
+	 * @param w JSONWriter instance
+	 * @param property the property
+	 * @param obj the object
+	 * @throws IOException
+	 */
+	private static void writeProperty(JSONWriter w, Property property, Object obj) throws IOException {
+		Object value;
+		try {
+			if (property.unboxed) {
+				switch (property.type.kind) {
+				case BOOLEAN:
+					w.value((boolean) property.getter.invokeExact(obj));
+					return;
+				case BYTE:
+					w.value((byte) property.getter.invokeExact(obj));
+					return;
+				case SHORT:
+					w.value((short) property.getter.invokeExact(obj));
+					return;
+				case INTEGER:
+					w.value((int) property.getter.invokeExact(obj));
+					return;
+				case LONG:
+					w.value((long) property.getter.invokeExact(obj));
+					return;
+				case FLOAT:
+					w.value((float) property.getter.invokeExact(obj));
+					return;
+				case DOUBLE:
+					w.value((double) property.getter.invokeExact(obj));
+					return;
+				default:
+					break;
+				}
+			}
+			value = (Object) property.getter.invokeExact(obj);
+		} catch ( IOException e ) {
+			throw e;
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Throwable e ) {
+			throw new JSONException(e);
+		}
+		writeValue(w, property.type, value);
 	}
 
-	private static void writeObject(Writer w, Class<?> type, Object value, int indent) throws IOException {
-		int newIndent = (IS_INDENT) ? indent + DEFAULT_INDENT : 0;
+	private static void writeValue(JSONWriter w, ValueType type, Object value) throws IOException {
 		if (value == null) {
 			// null values appear as null in the JSON String
-			w.append("null");
-		} else if (JSONSerializable.class.isAssignableFrom(type)) {
+			w.nullValue();
+			return;
+		}
+		switch (type.kind) {
+		case OBJECT:
 			// values of type JSONSerializable should be encoded recursively
-			encode(w, (JSONSerializable) value, newIndent);
-		} else if (type.equals(String.class)) {
-			writeString(w, (String) value);
-		} else if (Map.class.isAssignableFrom(type)) {
+			encode(w, (JSONSerializable) value);
+			break;
+		case STRING:
+			w.value((String) value);
+			break;
+		case MAP:
 			// Maps are converted into a JSON object: { "key" : " value", ... }
-			Map<?, ?> map = (Map<?, ?>) value;
-			w.append('{');
-			boolean separate = false;
-			for (Entry<?, ?> entry : map.entrySet()) {
-				// Commas between key/value pairs
-				if(separate) w.append(',');
-				separate = true;
-				// New line and indentation before the keys
-				if(IS_INDENT) {
-					w.append('\n');
-					indent(w, newIndent + DEFAULT_INDENT);
-				}
-				writeString(w, (String) entry.getKey());
-				if(IS_INDENT) w.append(' ');
-				w.append(':');
-				if(IS_INDENT) w.append(' ');
-				writeObject(w, entry.getValue().getClass(), entry.getValue(), newIndent);
+			w.beginObject();
+			for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				w.name((String) entry.getKey());
+				writeElement(w, entry.getValue());
 			}
-			if(IS_INDENT) {
-				w.append('\n');
-				indent(w, newIndent);
-			}
-			w.append('}');
-		} else if (Collection.class.isAssignableFrom(type)) {
+			w.endObject();
+			break;
+		case COLLECTION:
 			// Collections are converted into a JSON Array: [ value ]
-			Collection<?> list = (Collection<?>) value;
-			w.append('[');
-			boolean separate = false;
-			for (Object o : list) {
-				// Commas between values
-				if(separate) w.append(',');
-				if(IS_INDENT) w.append(' ');
-				separate = true;
-				// Write the value
-				writeObject(w, o.getClass(), o, newIndent);
+			w.beginArray();
+			for (Object o : (Collection<?>) value) {
+				writeElement(w, o);
 			}
-			w.append(']');
-		} else if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
-			// Numbers and other literals are put directly: 5, true, 2.3
-			w.append(value.toString()); // Append literal
-		} else {
+			w.endArray();
+			break;
+		case BOOLEAN:
+			w.value(((Boolean) value).booleanValue());
+			break;
+		case BYTE:
+		case SHORT:
+		case INTEGER:
+		case LONG:
+			w.value(((Number) value).longValue());
+			break;
+		case FLOAT:
+			w.value(((Float) value).floatValue());
+			break;
+		case DOUBLE:
+			w.value(((Double) value).doubleValue());
+			break;
+		case NUMBER:
+			// Other numbers are put directly: 5, 2.3
+			w.value((Number) value);
+			break;
+		default:
 			// Objects that do not implement JSONSerializable cannot be serialized
-			throw new JSONException(type + " could not be serialized!");
+			throw new JSONException(type.rawType + " could not be serialized!");
 		}
 	}
-
+	
 	/**
-	 * Write an escaped String between quotes to the Writer
-	 * @param w Writer instance
-	 * @param s String to be escaped
+	 * Write a value of a {@code Collection} or {@code Map}. The type of these
+	 * values is determined by their runtime class.
+	 * @param w JSONWriter instance
+	 * @param value the value
 	 * @throws IOException
 	 */
-	private static void writeString(Writer w, String s) throws IOException {
-		if (s == null) {
-			w.append("null");
+	private static void writeElement(JSONWriter w, Object value) throws IOException {
+		if (value == null) {
+			w.nullValue();
 		} else {
-			w.append('"');
-			char c;
-			for (int i = 0, l = s.length(); i < l; i++) {
-				switch (c = s.charAt(i)) {
-					case '\\':
-					case '"':
-					case '\b':
-					case '\t':
-					case '\n':
-					case '\f':
-					case '\r':
-						// Escape character
-						w.append('\\').append(c);
-						break;
-					default:
-						if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-								|| (c >= '\u2000' && c < '\u2100')) {
-							w.write(String.format("\\u%04X", c));
-						} else {
-							w.write(c);
-						}
-				}
-			}
-			w.append('"');
+			writeValue(w, ValueType.of(value.getClass()), value);
 		}
 	}
 
-	/**
-	 * Append the given amount of spaces to the {@code Writer}
-	 * @param w {@code Writer} instance
-	 * @param amount Amount of spaces
-	 * @throws IOException
-	 */
-	private static void indent(Writer w, int amount) throws IOException {
-		for (int i = 0; i < amount; i++)
-			w.append(' ');
-	}
-
 }
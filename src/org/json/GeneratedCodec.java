@@ -0,0 +1,447 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import static org.json.Bytecode.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.Bytecode.Code;
+import org.json.Bytecode.Label;
+import org.json.ClassBinding.Property;
+
+/**
+ * A {@code GeneratedCodec} decodes and encodes a {@code JSONSerializable}
+ * class through a class that is generated for it at runtime. The generated
+ * class matches the attribute names through the {@link NameTable} of the
+ * {@code ClassBinding} and switches on their slot, writes the names from a
+ * table in which they are encoded once, accesses fields and getters and
+ * setters directly, and reads and writes primitive values without boxing.
+ * For the {@code PlainObjectWrapper} from the tests it is the equivalent of:
+ * <pre>
+ * public static Object read(JSONReader r, NameTable names) {
+ * 	PlainObjectWrapper obj = new PlainObjectWrapper();
+ * 	int expected = 0;
+ * 	r.beginObject();
+ * 	while(r.hasNext()) {
+ * 		switch(r.nextName(names, expected)) {
+ * 		case 0:
+ * 			obj.value = r.peek() == JSONToken.NULL ? ... : r.nextString();
+ * 			expected = 1;
+ * 			continue;
+ * 		// ...
+ * 		}
+ * 		r.skipValue();
+ * 	}
+ * 	r.endObject();
+ * 	return obj;
+ * }
+ * 
+ * public static void write(Object o, JSONWriter w, NameTable names) {
+ * 	PlainObjectWrapper obj = (PlainObjectWrapper) o;
+ * 	w.beginObject();
+ * 	w.name(names, 0).value(obj.value);
+ * 	// ...
+ * 	w.endObject();
+ * }
+ * </pre>
+ * The name tables are bound to the method handles, so the generated class
+ * has no state.
+ * The generated class is defined in its own class loader, so it can only
+ * access public members. Codecs are only generated for public classes with
+ * a public default constructor, of which all attributes are public fields
+ * or public getters and setters of type {@code String}, {@code boolean},
+ * {@code int}, {@code long}, {@code float}, {@code double} or another
+ * {@code JSONSerializable} class, and none is required. Other classes are
+ * decoded and encoded through their {@link ClassBinding}.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+final class GeneratedCodec {
+	
+	private final static String OBJECT = "java/lang/Object";
+	private final static String STRING = "java/lang/String";
+	private final static String READER = "org/json/JSONReader";
+	private final static String WRITER = "org/json/JSONWriter";
+	private final static String TOKEN = "org/json/JSONToken";
+	private final static String NAMES = "org/json/NameTable";
+	
+	private final static GeneratedCodec UNSUPPORTED = new GeneratedCodec(null, null);
+	
+	private static final ClassValue<GeneratedCodec> CODECS = new ClassValue<GeneratedCodec>() {
+		@Override
+		protected GeneratedCodec computeValue(Class<?> type) {
+			return generate(type);
+		}
+	};
+	
+	/**
+	 * Handle of type {@code (JSONReader)Object} that reads an object, or
+	 * {@code null} if no codec could be generated
+	 */
+	final MethodHandle read;
+	
+	/**
+	 * Handle of type {@code (Object,JSONWriter)void} that writes an object,
+	 * or {@code null} if no codec could be generated
+	 */
+	final MethodHandle write;
+	
+	private GeneratedCodec(MethodHandle read, MethodHandle write) {
+		this.read = read;
+		this.write = write;
+	}
+	
+	/**
+	 * @param klass the class
+	 * @return the generated codec for the class, which has no handles if
+	 *         the class is not supported
+	 */
+	static GeneratedCodec of(Class<?> klass) {
+		return CODECS.get(klass);
+	}
+	
+	/**
+	 * Generate the codec for a class. Errors in the generated class, such
+	 * as a {@code VerifyError}, are not caught, so that they are not hidden
+	 * by the fallback to the class binding.
+	 * @param klass the class
+	 * @return the codec, or a codec without handles if the class is not
+	 *         supported
+	 * @throws JSONException if the generated class does not have the
+	 *         expected methods
+	 */
+	private static GeneratedCodec generate(Class<?> klass) throws JSONException {
+		ClassBinding<?> binding = ClassBinding.of(klass);
+		if(!isSupported(binding)) return UNSUPPORTED;
+		String name = klass.getName() + "$$JSONCodec";
+		List<Property> written = new ArrayList<Property>();
+		for(Property property : binding.properties) {
+			if(property.getterMember != null) written.add(property);
+		}
+		String[] writtenNames = new String[written.size()];
+		for(int i = 0; i < writtenNames.length; i++)
+			writtenNames[i] = written.get(i).name;
+		try {
+			byte[] bytes = generate(binding, name.replace('.', '/'), written);
+			Loader loader = new Loader(klass.getClassLoader());
+			loader.define(name, bytes);
+			// Initialize the class, so it is verified before it is used
+			Class<?> codec = Class.forName(name, true, loader);
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			// The name tables are bound to the handles
+			MethodHandle read = lookup.findStatic(codec, "read",
+					MethodType.methodType(Object.class, JSONReader.class, NameTable.class));
+			MethodHandle write = lookup.findStatic(codec, "write",
+					MethodType.methodType(void.class, Object.class, JSONWriter.class, NameTable.class));
+			return new GeneratedCodec(
+					MethodHandles.insertArguments(read, 1, binding.names),
+					MethodHandles.insertArguments(write, 2, new NameTable(writtenNames)));
+		} catch ( IllegalAccessException e ) {
+			// The codec cannot access the class, fall back to the class binding
+			return UNSUPPORTED;
+		} catch ( ReflectiveOperationException e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * @param binding the binding plan for a class
+	 * @return true if a codec can be generated for the class
+	 */
+	private static boolean isSupported(ClassBinding<?> binding) {
+		Class<?> klass = binding.klass;
+		if(!isPublic(klass) || binding.buffered || binding.hasRequired
+				|| Modifier.isAbstract(klass.getModifiers()))
+			return false;
+		try {
+			klass.getConstructor();
+		} catch ( NoSuchMethodException e ) {
+			return false;
+		}
+		for(Property property : binding.properties) {
+			switch(property.type.kind) {
+			case BOOLEAN:
+			case INTEGER:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+				if(!property.unboxed) return false;
+				break;
+			case OBJECT:
+				if(!isPublic(property.type.rawType)) return false;
+				break;
+			case STRING:
+				break;
+			default:
+				return false;
+			}
+			if(!isAccessible(property.getterMember) || !isAccessible(property.setterMember))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true if the class and the classes it is nested in are public
+	 */
+	private static boolean isPublic(Class<?> klass) {
+		for(Class<?> c = klass; c != null; c = c.getDeclaringClass())
+			if(!Modifier.isPublic(c.getModifiers())) return false;
+		return true;
+	}
+	
+	/**
+	 * @return true if the member is absent, or a public instance member
+	 */
+	private static boolean isAccessible(Member member) {
+		if(member == null) return true;
+		int modifiers = member.getModifiers();
+		return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers);
+	}
+	
+	/**
+	 * Generate the codec class
+	 * @param binding the binding plan for the class
+	 * @param name the internal name of the codec class
+	 * @param written the names of the properties with a getter
+	 * @return the class file
+	 */
+	private static byte[] generate(ClassBinding<?> binding, String name, List<Property> written) {
+		Bytecode bc = new Bytecode(name);
+		String owner = internalName(binding.klass);
+		String names = "L" + NAMES + ";";
+		
+		// public static Object read(JSONReader r, NameTable names)
+		Code code = bc.method("read", "(L" + READER + ";" + names + ")L" + OBJECT + ";", 6, 4);
+		code.op(NEW, bc.classRef(owner)).op(DUP)
+			.op(INVOKESPECIAL, bc.methodRef(owner, "<init>", "()V")).op(ASTORE_2);
+		// Most input has the attributes in the same order as the class
+		code.push(binding.firstSlot).op(ISTORE_3);
+		code.op(ALOAD_0).op(INVOKEVIRTUAL, bc.methodRef(READER, "beginObject", "()V"));
+		
+		// The slots of the attributes that are bound, in ascending order
+		Map<Integer, Property> attributes = new TreeMap<Integer, Property>();
+		for(Property property : binding.properties) {
+			// Only the first property with a name is bound
+			if(!property.writable || binding.slot(property.name).property != property) continue;
+			attributes.put(binding.slot(property.name).index, property);
+		}
+		int[] keys = new int[attributes.size()];
+		Label[] targets = new Label[keys.length];
+		Label loop = new Label(), skip = new Label(), end = new Label();
+		
+		code.mark(loop).op(ALOAD_0).op(INVOKEVIRTUAL, bc.methodRef(READER, "hasNext", "()Z")).jump(IFEQ, end);
+		code.op(ALOAD_0).op(ALOAD_1).op(ILOAD_3)
+			.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextName", "(" + names + "I)I"));
+		int i = 0;
+		for(Integer slot : attributes.keySet()) {
+			keys[i] = slot;
+			targets[i++] = new Label();
+		}
+		code.lookupswitch(keys, targets, skip);
+		i = 0;
+		for(Map.Entry<Integer, Property> attribute : attributes.entrySet()) {
+			code.mark(targets[i++]);
+			code.op(ALOAD_2).op(ALOAD_0);
+			readValue(bc, code, attribute.getValue().type);
+			setValue(bc, code, attribute.getValue());
+			code.push(binding.nextSlot(attribute.getKey())).op(ISTORE_3);
+			code.jump(GOTO, loop);
+		}
+		// Attributes that are not bound are skipped
+		code.mark(skip).op(ALOAD_0).op(INVOKEVIRTUAL, bc.methodRef(READER, "skipValue", "()V")).jump(GOTO, loop);
+		code.mark(end).op(ALOAD_0).op(INVOKEVIRTUAL, bc.methodRef(READER, "endObject", "()V"));
+		code.op(ALOAD_2).op(ARETURN).end();
+		
+		// public static void write(Object o, JSONWriter w, NameTable names)
+		code = bc.method("write", "(L" + OBJECT + ";L" + WRITER + ";" + names + ")V", 6, 4);
+		code.op(ALOAD_0).op(CHECKCAST, bc.classRef(owner)).op(ASTORE_3);
+		code.op(ALOAD_1).op(INVOKEVIRTUAL, bc.methodRef(WRITER, "beginObject", "()L" + WRITER + ";")).op(POP);
+		for(i = 0; i < written.size(); i++) {
+			// The names are encoded once, in the table
+			code.op(ALOAD_1).op(ALOAD_2).push(i)
+				.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "name", "(" + names + "I)L" + WRITER + ";"));
+			code.op(ALOAD_3);
+			getValue(bc, code, written.get(i));
+			writeValue(bc, code, written.get(i).type);
+		}
+		code.op(ALOAD_1).op(INVOKEVIRTUAL, bc.methodRef(WRITER, "endObject", "()L" + WRITER + ";")).op(POP);
+		code.op(RETURN).end();
+		
+		return bc.toByteArray();
+	}
+	
+	/**
+	 * Read a value from the {@code JSONReader} on top of the stack
+	 */
+	private static void readValue(Bytecode bc, Code code, ValueType type) {
+		switch(type.kind) {
+		case BOOLEAN:
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextBoolean", "()Z"));
+			break;
+		case INTEGER:
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextInt", "()I"));
+			break;
+		case LONG:
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextLong", "()J"));
+			break;
+		case FLOAT:
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextFloat", "()F"));
+			break;
+		case DOUBLE:
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextDouble", "()D"));
+			break;
+		case STRING:
+			// r.peek() == JSONToken.NULL ? (r.nextNull(), null) : r.nextString()
+			Label string = new Label(), done = new Label();
+			code.op(DUP).op(INVOKEVIRTUAL, bc.methodRef(READER, "peek", "()L" + TOKEN + ";"))
+				.op(GETSTATIC, bc.fieldRef(TOKEN, "NULL", "L" + TOKEN + ";")).jump(IF_ACMPNE, string);
+			code.op(INVOKEVIRTUAL, bc.methodRef(READER, "nextNull", "()V")).op(ACONST_NULL).jump(GOTO, done);
+			code.mark(string).op(INVOKEVIRTUAL, bc.methodRef(READER, "nextString", "()L" + STRING + ";"));
+			code.mark(done);
+			break;
+		default:
+			// Decoder.decode(Type.class, r)
+			String klass = internalName(type.rawType);
+			code.op(LDC_W, bc.classRef(klass)).op(SWAP)
+				.op(INVOKESTATIC, bc.methodRef("org/json/Decoder", "decode", "(Ljava/lang/Class;L" + READER + ";)Lorg/json/JSONSerializable;"))
+				.op(CHECKCAST, bc.classRef(klass));
+		}
+	}
+	
+	/**
+	 * Set the value on top of the stack on the object below it
+	 */
+	private static void setValue(Bytecode bc, Code code, Property property) {
+		Member member = property.setterMember;
+		String owner = internalName(member.getDeclaringClass());
+		if(member instanceof Field) {
+			code.op(PUTFIELD, bc.fieldRef(owner, member.getName(), descriptor(property.type.rawType)));
+		} else {
+			Method m = (Method) member;
+			code.op(INVOKEVIRTUAL, bc.methodRef(owner, m.getName(), descriptor(m)));
+			// Discard the result of fluent setters
+			Class<?> result = m.getReturnType();
+			if(result == long.class || result == double.class) code.op(POP2);
+			else if(result != void.class) code.op(POP);
+		}
+	}
+	
+	/**
+	 * Get the value of the object on top of the stack
+	 */
+	private static void getValue(Bytecode bc, Code code, Property property) {
+		Member member = property.getterMember;
+		String owner = internalName(member.getDeclaringClass());
+		if(member instanceof Field) {
+			code.op(GETFIELD, bc.fieldRef(owner, member.getName(), descriptor(property.type.rawType)));
+		} else {
+			code.op(INVOKEVIRTUAL, bc.methodRef(owner, member.getName(), descriptor((Method) member)));
+		}
+	}
+	
+	/**
+	 * Write the value on top of the stack to the {@code JSONWriter} below it
+	 */
+	private static void writeValue(Bytecode bc, Code code, ValueType type) {
+		String result = ")L" + WRITER + ";";
+		String string = "L" + STRING + ";";
+		switch(type.kind) {
+		case BOOLEAN:
+			code.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(Z" + result)).op(POP);
+			break;
+		case INTEGER:
+			code.op(I2L).op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(J" + result)).op(POP);
+			break;
+		case LONG:
+			code.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(J" + result)).op(POP);
+			break;
+		case FLOAT:
+			code.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(F" + result)).op(POP);
+			break;
+		case DOUBLE:
+			code.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(D" + result)).op(POP);
+			break;
+		case STRING:
+			code.op(INVOKEVIRTUAL, bc.methodRef(WRITER, "value", "(" + string + result)).op(POP);
+			break;
+		default:
+			// Encoder.encode(w, value)
+			code.op(INVOKESTATIC, bc.methodRef("org/json/Encoder", "encode", "(L" + WRITER + ";Lorg/json/JSONSerializable;)V"));
+		}
+	}
+	
+	private static String internalName(Class<?> klass) {
+		return klass.getName().replace('.', '/');
+	}
+	
+	private static String descriptor(Method m) {
+		StringBuilder sb = new StringBuilder("(");
+		for(Class<?> parameter : m.getParameterTypes())
+			sb.append(descriptor(parameter));
+		return sb.append(')').append(descriptor(m.getReturnType())).toString();
+	}
+	
+	private static String descriptor(Class<?> klass) {
+		if(klass == void.class) return "V";
+		if(klass == boolean.class) return "Z";
+		if(klass == byte.class) return "B";
+		if(klass == char.class) return "C";
+		if(klass == short.class) return "S";
+		if(klass == int.class) return "I";
+		if(klass == long.class) return "J";
+		if(klass == float.class) return "F";
+		if(klass == double.class) return "D";
+		if(klass.isArray()) return internalName(klass);
+		return "L" + internalName(klass) + ";";
+	}
+	
+	/**
+	 * Class loader in which a codec class is defined. Its parent is the loader
+	 * of the class the codec is generated for.
+	 */
+	private static final class Loader extends ClassLoader {
+		
+		Loader(ClassLoader parent) {
+			super(parent);
+		}
+		
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+	
+}
@@ -0,0 +1,200 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.IOException;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A {@code JSONCodec} decodes and encodes a {@code JSONSerializable} class
+ * without reflection. Codecs are generated at compile time by the
+ * {@link CodecProcessor}, and are found at runtime by their name: the codec
+ * for {@code com.example.Outer.Inner} is
+ * {@code com.example.Outer_Inner_JSONCodec}. The {@link Decoder} and
+ * {@link Encoder} use the codec of a class, if there is one, instead of
+ * binding the class through reflection.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public abstract class JSONCodec<T extends JSONSerializable> {
+	
+	/**
+	 * Suffix of the name of a codec class
+	 */
+	public final static String SUFFIX = "_JSONCodec";
+	
+	/**
+	 * Marks the codecs that are generated by the {@link CodecProcessor}.
+	 * Codecs written by hand are not marked, and are never replaced by a
+	 * generated codec.
+	 */
+	@Documented
+	@Retention(RetentionPolicy.CLASS)
+	@Target(ElementType.TYPE)
+	public @interface Generated {
+	}
+	
+	/**
+	 * Cached for the classes that have no codec
+	 */
+	private final static Object NONE = new Object();
+	
+	private static final ClassValue<Object> CODECS = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			JSONCodec<?> codec = find(type);
+			return codec == null ? NONE : codec;
+		}
+	};
+	
+	private final Class<T> type;
+	
+	/**
+	 * Construct a new {@code JSONCodec}
+	 * @param type the class this codec decodes and encodes
+	 */
+	protected JSONCodec(Class<T> type) {
+		this.type = type;
+	}
+	
+	/**
+	 * Read an object. The reader is positioned at the opening bracket of the
+	 * object.
+	 * @param reader the JSONReader
+	 * @return the decoded object
+	 * @throws JSONException
+	 */
+	public abstract T read(JSONReader reader) throws JSONException;
+	
+	/**
+	 * Write an object
+	 * @param writer the JSONWriter
+	 * @param value the object, not {@code null}
+	 * @throws JSONException
+	 * @throws IOException
+	 */
+	public abstract void write(JSONWriter writer, T value) throws JSONException, IOException;
+	
+	/**
+	 * Consume the next value if it is a null value
+	 * @param reader the JSONReader
+	 * @return true if a null value was consumed
+	 * @throws JSONException
+	 */
+	protected static boolean nextNull(JSONReader reader) throws JSONException {
+		if(reader.peek() != JSONToken.NULL) return false;
+		reader.nextNull();
+		return true;
+	}
+	
+	/**
+	 * @param name the attribute name
+	 * @return the exception for a required attribute that is absent
+	 */
+	protected static JSONException missing(String name) {
+		return new JSONException("Field " + name + " was required but undefined in input string");
+	}
+	
+	/**
+	 * @param type the name of the primitive type
+	 * @return the exception for a null value of a primitive attribute
+	 */
+	protected static JSONException nullValue(String type) {
+		return new JSONException("Null is not a valid value for " + type);
+	}
+	
+	/**
+	 * @param type the class
+	 * @return the exception for when no constructor can be used
+	 */
+	protected static JSONException notInstantiable(Class<?> type) {
+		return new JSONException(type.getCanonicalName() + " could not be instantiated");
+	}
+	
+	/**
+	 * @param value an integer
+	 * @return the integer as byte
+	 * @throws JSONException if the value is out of range
+	 */
+	protected static byte toByte(int value) throws JSONException {
+		if(value != (byte) value) throw new JSONException("Value " + value + " out of range for byte");
+		return (byte) value;
+	}
+	
+	/**
+	 * @param value an integer
+	 * @return the integer as short
+	 * @throws JSONException if the value is out of range
+	 */
+	protected static short toShort(int value) throws JSONException {
+		if(value != (short) value) throw new JSONException("Value " + value + " out of range for short");
+		return (short) value;
+	}
+	
+	/**
+	 * @param klass the class
+	 * @return the codec for the class, or {@code null} if there is none
+	 */
+	static JSONCodec<?> of(Class<?> klass) {
+		Object codec = CODECS.get(klass);
+		return codec == NONE ? null : (JSONCodec<?>) codec;
+	}
+	
+	/**
+	 * @param klass the class
+	 * @return the binary name of the codec class for a class
+	 */
+	static String codecName(Class<?> klass) {
+		String name = klass.getName();
+		int separator = name.lastIndexOf('.') + 1;
+		return name.substring(0, separator) + name.substring(separator).replace('$', '_') + SUFFIX;
+	}
+	
+	/**
+	 * @param klass the class
+	 * @return the codec for the class, or {@code null} if there is none
+	 */
+	private static JSONCodec<?> find(Class<?> klass) {
+		if(!JSONSerializable.class.isAssignableFrom(klass)) return null;
+		try {
+			Class<?> codecClass = Class.forName(codecName(klass), true, klass.getClassLoader());
+			if(JSONCodec.class.isAssignableFrom(codecClass)) {
+				JSONCodec<?> codec = (JSONCodec<?>) codecClass.getConstructor().newInstance();
+				// Make sure the codec is not for a class with a similar name
+				if(codec.type == klass) return codec;
+			}
+		} catch ( ClassNotFoundException e ) {
+			// No codec was generated for the class
+		} catch ( Exception e ) {
+			throw new JSONException(e);
+		}
+		return null;
+	}
+	
+}
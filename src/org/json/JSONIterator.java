@@ -0,0 +1,134 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@code JSONIterator} decodes the elements of a JSON array, or the records
+ * of a JSON Lines input, one at a time while they are read from the input.
+ * Only the current element is kept in memory, so inputs that are much larger
+ * than the available memory can be processed. Iterators are created by
+ * {@link Decoder#iterator} and {@link Decoder#lines}.
+ * <p>
+ * The iterator should be closed when it is not used until the end of the
+ * input, to close the underlying input.
+ * <pre>
+ * JSONIterator&lt;PlainObjectWrapper&gt; it = Decoder.iterator(PlainObjectWrapper.class, inputStream);
+ * try {
+ * 	while(it.hasNext()) {
+ * 		PlainObjectWrapper object = it.next();
+ * 	}
+ * } finally {
+ * 	it.close();
+ * }
+ * </pre>
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class JSONIterator<T extends JSONSerializable> implements Iterator<T>, Closeable {
+	
+	private final Class<T> klass;
+	private final JSONReader reader;
+	
+	/**
+	 * True if the elements are separate documents instead of array elements
+	 */
+	private final boolean lines;
+	
+	/**
+	 * True once the end of the input is read
+	 */
+	private boolean done = false;
+	
+	/**
+	 * Construct a new {@code JSONIterator}
+	 * @param klass the class of the elements
+	 * @param reader the reader, positioned before the array or first record
+	 * @param lines true to read a document per element, as in JSON Lines
+	 * @throws JSONException if the next value is not an array
+	 */
+	JSONIterator(Class<T> klass, JSONReader reader, boolean lines) throws JSONException {
+		this.klass = klass;
+		this.reader = reader;
+		this.lines = lines;
+		if(lines) reader.setMultipleDocuments(true);
+		else reader.beginArray();
+	}
+	
+	/**
+	 * @return true if there are more elements
+	 * @throws JSONException if the input is malformed
+	 */
+	@Override
+	public boolean hasNext() throws JSONException {
+		if(done) return false;
+		if(lines) {
+			done = reader.peek() == JSONToken.END_DOCUMENT;
+			return !done;
+		}
+		if(reader.hasNext()) return true;
+		reader.endArray();
+		if(reader.peek() != JSONToken.END_DOCUMENT)
+			throw new JSONException("Unexpected input after end of array");
+		done = true;
+		return false;
+	}
+	
+	/**
+	 * Decode the next element
+	 * @return the element, or {@code null} for a JSON null
+	 * @throws JSONException if the element could not be decoded
+	 * @throws NoSuchElementException if the end of the input is reached
+	 */
+	@Override
+	public T next() throws JSONException {
+		if(!hasNext()) throw new NoSuchElementException();
+		return Decoder.decode(klass, reader);
+	}
+	
+	/**
+	 * Elements cannot be removed
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * Close the underlying input
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		done = true;
+		reader.close();
+	}
+	
+}
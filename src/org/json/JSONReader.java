@@ -0,0 +1,1122 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@code JSONReader} reads a JSON document as a stream of tokens. Values
+ * can be read one at a time, numbers can be read as primitives, and values
+ * that are not needed can be skipped. Only the nesting of the current value
+ * is kept in memory, so documents of any size can be read.
+ * <p>
+ * The reader accepts the same input as the {@link Decoder}: keys may be
+ * unquoted, and strings may be quoted with double or single quotes.
+ * <p>
+ * Input is read as UTF-8 bytes. The bytes are only decoded to characters
+ * when a String value is built, so structure, numbers and skipped values are
+ * read straight from the bytes. Files are memory mapped, and blocks of the
+ * mapped bytes are copied into the same heap buffer as other input.
+ * <pre>
+ * JSONReader reader = new JSONReader(input);
+ * reader.beginObject();
+ * while(reader.hasNext()) {
+ * 	String name = reader.nextName();
+ * 	if(name.equals("id")) {
+ * 		long id = reader.nextLong();
+ * 	} else {
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.endObject();
+ * </pre>
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class JSONReader implements Closeable {
+
+	private final static String NULL = "null";
+	private final static String TRUE = "true";
+	private final static String FALSE = "false";
+	
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	private final static Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	/*
+	 * The scopes in which the reader can be
+	 */
+	private final static int EMPTY_DOCUMENT = 0;
+	private final static int NONEMPTY_DOCUMENT = 1;
+	private final static int EMPTY_OBJECT = 2;
+	private final static int NONEMPTY_OBJECT = 3;
+	private final static int DANGLING_NAME = 4;
+	private final static int EMPTY_ARRAY = 5;
+	private final static int NONEMPTY_ARRAY = 6;
+	
+	/**
+	 * The default size of the input buffer, in bytes
+	 */
+	public final static int DEFAULT_BUFFER_SIZE = 8192;
+	
+	/**
+	 * The default size of the windows in which files are mapped, in bytes
+	 */
+	public final static long DEFAULT_WINDOW_SIZE = 1L << 28;
+	
+	private final InputStream in;
+	private final Reader reader;
+	
+	/**
+	 * The mapped file, which is mapped one window at a time, so that files
+	 * larger than 2 GB can be read
+	 */
+	private final FileChannel channel;
+	private final long windowSize;
+	private MappedByteBuffer window = null;
+	
+	/**
+	 * The position of the current window in the file
+	 */
+	private long windowPosition = 0;
+	
+	/**
+	 * The UTF-8 input is read in blocks into this buffer. The bytes between
+	 * {@code pos} and {@code limit} have not been consumed yet.
+	 */
+	private byte[] buffer;
+	private int pos = 0;
+	private int limit = 0;
+	
+	/**
+	 * Characters read from a {@code Reader}, before they are encoded into
+	 * the buffer
+	 */
+	private char[] chars = null;
+	
+	/**
+	 * A high surrogate that was read at the end of the previous block
+	 */
+	private char pendingSurrogate = 0;
+	
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+	
+	/**
+	 * The token that was peeked, or {@code null} if the next token has not
+	 * been read yet
+	 */
+	private JSONToken peeked = null;
+	
+	/**
+	 * The quote of the peeked string or name, or {@code 0} if it is an
+	 * unquoted literal
+	 */
+	private char quote = 0;
+	
+	/**
+	 * The position and length of the peeked unquoted literal in the buffer
+	 */
+	private int literalStart = 0;
+	private int literalLength = 0;
+	
+	/**
+	 * The bytes of strings that span multiple blocks or contain escapes
+	 */
+	private byte[] scratch = new byte[64];
+	private int scratchLength = 0;
+	
+	/**
+	 * The cache for short strings, or {@code null}
+	 */
+	private StringCache cache = null;
+	
+	/**
+	 * True if the input may contain multiple documents
+	 */
+	private boolean multipleDocuments = false;
+	
+	/**
+	 * Construct a new {@code JSONReader}
+	 * @param reader the Reader
+	 */
+	public JSONReader(Reader reader) {
+		this(reader, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader}
+	 * @param reader the Reader
+	 * @param bufferSize the size of the input buffer
+	 */
+	public JSONReader(Reader reader, int bufferSize) {
+		this(null, reader, null, 0, new byte[Math.max(bufferSize, 16)], 0, 0);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader}
+	 * @param input JSON String
+	 */
+	public JSONReader(String input) {
+		this(input.getBytes(UTF_8));
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads UTF-8 input
+	 * @param io InputStream
+	 */
+	public JSONReader(InputStream io) {
+		this(io, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads UTF-8 input
+	 * @param io InputStream
+	 * @param bufferSize the amount of bytes to read at once
+	 */
+	public JSONReader(InputStream io, int bufferSize) {
+		this(io, null, null, 0, new byte[Math.max(bufferSize, 16)], 0, 0);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads a UTF-8 encoded file.
+	 * The file is memory mapped, and blocks of the mapped bytes are copied
+	 * into the input buffer on the heap, which is scanned like the buffer of
+	 * a stream. This saves the read calls, but it is not zero-copy.
+	 * @param path the path of the file
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONReader(Path path) throws IOException {
+		this(path, DEFAULT_BUFFER_SIZE, DEFAULT_WINDOW_SIZE);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads a UTF-8 encoded file.
+	 * The file is memory mapped in windows, so that files larger than 2 GB
+	 * can be read.
+	 * @param path the path of the file
+	 * @param bufferSize the amount of bytes to read at once
+	 * @param windowSize the amount of bytes to map at once, at least 16
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONReader(Path path, int bufferSize, long windowSize) throws IOException {
+		this(null, null, FileChannel.open(path, StandardOpenOption.READ), Math.max(windowSize, 16),
+				new byte[Math.max(bufferSize, 16)], 0, 0);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads UTF-8 input. The bytes are
+	 * read in place, and are not modified.
+	 * @param input UTF-8 input
+	 */
+	public JSONReader(byte[] input) {
+		this(input, 0, input.length);
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader} that reads UTF-8 input. The bytes are
+	 * read in place, and are not modified.
+	 * @param input UTF-8 input
+	 * @param off the offset of the first byte
+	 * @param len the amount of bytes to read
+	 */
+	public JSONReader(byte[] input, int off, int len) {
+		this(null, null, null, 0, input, off, off + len);
+		if(off < 0 || len < 0 || off + len > input.length)
+			throw new IndexOutOfBoundsException();
+	}
+	
+	/**
+	 * Construct a new {@code JSONReader}
+	 * @param in the InputStream, or {@code null}
+	 * @param reader the Reader, or {@code null}
+	 * @param channel the file to map, or {@code null}
+	 * @param windowSize the amount of bytes of the file to map at once
+	 * @param buffer the input buffer
+	 * @param pos the position of the first byte in the buffer
+	 * @param limit the end of the bytes already in the buffer
+	 */
+	private JSONReader(InputStream in, Reader reader, FileChannel channel, long windowSize, byte[] buffer, int pos, int limit) {
+		this.in = in;
+		this.reader = reader;
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.buffer = buffer;
+		this.pos = pos;
+		this.limit = limit;
+		this.stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+	
+	/**
+	 * @return the type of the next token, without consuming it
+	 * @throws JSONException if the input is malformed
+	 */
+	public JSONToken peek() throws JSONException {
+		if(peeked == null) peeked = doPeek();
+		return peeked;
+	}
+	
+	/**
+	 * @return true if the current object or array has another element
+	 * @throws JSONException if the input is malformed
+	 */
+	public boolean hasNext() throws JSONException {
+		JSONToken token = peek();
+		return token != JSONToken.END_OBJECT && token != JSONToken.END_ARRAY && token != JSONToken.END_DOCUMENT;
+	}
+	
+	/**
+	 * Consume the opening bracket of an object
+	 * @throws JSONException if the next token is not the beginning of an object
+	 */
+	public void beginObject() throws JSONException {
+		expect(JSONToken.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+		peeked = null;
+	}
+	
+	/**
+	 * Consume the closing bracket of an object
+	 * @throws JSONException if the next token is not the end of an object
+	 */
+	public void endObject() throws JSONException {
+		expect(JSONToken.END_OBJECT);
+		stackSize--;
+		peeked = null;
+	}
+	
+	/**
+	 * Consume the opening bracket of an array
+	 * @throws JSONException if the next token is not the beginning of an array
+	 */
+	public void beginArray() throws JSONException {
+		expect(JSONToken.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+		peeked = null;
+	}
+	
+	/**
+	 * Consume the closing bracket of an array
+	 * @throws JSONException if the next token is not the end of an array
+	 */
+	public void endArray() throws JSONException {
+		expect(JSONToken.END_ARRAY);
+		stackSize--;
+		peeked = null;
+	}
+	
+	/**
+	 * Use a cache for the strings and names that are read, so that
+	 * repeated strings share the same instance
+	 * @param cache the cache, or {@code null} to create new strings
+	 */
+	public void setStringCache(StringCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Allow the input to contain multiple documents separated by whitespace,
+	 * as in JSON Lines. {@link #peek()} returns
+	 * {@link JSONToken#END_DOCUMENT} only after the last document.
+	 * @param enabled true to read multiple documents
+	 */
+	public void setMultipleDocuments(boolean enabled) {
+		this.multipleDocuments = enabled;
+	}
+	
+	/**
+	 * @return the key of the next key value pair
+	 * @throws JSONException if the next token is not a name
+	 */
+	public String nextName() throws JSONException {
+		expect(JSONToken.NAME);
+		return consumeString();
+	}
+	
+	/**
+	 * Read the next name and look it up in a table of known names. Names in
+	 * the buffer are matched without creating a String.
+	 * @param names the known names
+	 * @return the index of the name in the table, or -1 if it is unknown
+	 * @throws JSONException if the next token is not a name
+	 */
+	public int nextName(NameTable names) throws JSONException {
+		return nextName(names, -1);
+	}
+	
+	/**
+	 * Read the next name and look it up in a table of known names. The
+	 * expected name is compared first, so names that appear in the expected
+	 * order are matched without a lookup.
+	 * @param names the known names
+	 * @param expected the index of the expected name, or -1
+	 * @return the index of the name in the table, or -1 if it is unknown
+	 * @throws JSONException if the next token is not a name
+	 */
+	public int nextName(NameTable names, int expected) throws JSONException {
+		if(expected >= names.size()) expected = -1;
+		expect(JSONToken.NAME);
+		peeked = null;
+		if(quote == 0) {
+			if(expected >= 0 && names.matches(expected, buffer, literalStart, literalLength)) return expected;
+			return names.find(buffer, literalStart, literalLength);
+		}
+		byte quote = (byte) this.quote;
+		if(expected >= 0 && names.matches(expected, buffer, pos, limit, quote)) {
+			pos += names.length(expected) + 1;
+			return expected;
+		}
+		int h = 0;
+		for(int p = pos, l = limit; p < l; p++) {
+			byte c = buffer[p];
+			if(c == quote) {
+				int index = names.find(buffer, pos, p - pos, h);
+				pos = p + 1;
+				return index;
+			} else if (c == '\\') {
+				break;
+			}
+			h = 31 * h + c;
+		}
+		// Names with escapes or names that span multiple blocks
+		return names.find(readQuoted(quote));
+	}
+	
+	/**
+	 * Read the next value as String. Numbers and booleans are returned as
+	 * they appear in the input.
+	 * @return the String value
+	 * @throws JSONException if the next token is not a string, number or boolean
+	 */
+	public String nextString() throws JSONException {
+		JSONToken token = peek();
+		if(token != JSONToken.STRING && token != JSONToken.NUMBER && token != JSONToken.BOOLEAN)
+			throw unexpected(JSONToken.STRING);
+		return consumeString();
+	}
+	
+	/**
+	 * @return the boolean value
+	 * @throws JSONException if the next token is not a boolean
+	 */
+	public boolean nextBoolean() throws JSONException {
+		expect(JSONToken.BOOLEAN);
+		peeked = null;
+		return literalLength == TRUE.length();
+	}
+	
+	/**
+	 * Consume a null value
+	 * @throws JSONException if the next token is not null
+	 */
+	public void nextNull() throws JSONException {
+		expect(JSONToken.NULL);
+		peeked = null;
+	}
+	
+	/**
+	 * @return the int value
+	 * @throws JSONException if the next token is not a number that fits in an int
+	 */
+	public int nextInt() throws JSONException {
+		return (int) nextInteger(Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+	}
+	
+	/**
+	 * @return the long value
+	 * @throws JSONException if the next token is not a number that fits in a long
+	 */
+	public long nextLong() throws JSONException {
+		return nextInteger(Long.MIN_VALUE, Long.MAX_VALUE, "long");
+	}
+	
+	/**
+	 * @return the float value
+	 * @throws JSONException if the next token is not a number
+	 */
+	public float nextFloat() throws JSONException {
+		byte[] b = consumeNumber();
+		try {
+			return DoubleConversion.parseFloat(b, literalStart, literalLength);
+		} catch (NumberFormatException e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * @return the double value
+	 * @throws JSONException if the next token is not a number
+	 */
+	public double nextDouble() throws JSONException {
+		byte[] b = consumeNumber();
+		try {
+			return DoubleConversion.parseDouble(b, literalStart, literalLength);
+		} catch (NumberFormatException e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * Skip the next value, including any nested objects and arrays. If the next
+	 * token is a name, the name and its value are skipped.
+	 * @throws JSONException if the input is malformed
+	 */
+	public void skipValue() throws JSONException {
+		// Skip the name, its value is skipped below
+		if(peek() == JSONToken.NAME) skipString();
+		int depth = 0;
+		do {
+			switch(peek()) {
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case END_OBJECT:
+				if(depth == 0) throw new JSONException("Expected a value but got " + peeked + " instead");
+				endObject();
+				depth--;
+				break;
+			case END_ARRAY:
+				if(depth == 0) throw new JSONException("Expected a value but got " + peeked + " instead");
+				endArray();
+				depth--;
+				break;
+			case END_DOCUMENT:
+				throw new JSONException("Unexpected end of input");
+			default:
+				skipString();
+			}
+		} while(depth > 0);
+	}
+	
+	/**
+	 * Close the underlying Reader, InputStream or file. Mapped windows are
+	 * released once they are garbage collected.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		peeked = null;
+		stackSize = 0;
+		window = null;
+		if(in != null) in.close();
+		if(reader != null) reader.close();
+		if(channel != null) channel.close();
+	}
+	
+	/**
+	 * Parse the next number as an integer. Unquoted numbers are parsed from
+	 * the buffer directly, without creating a String.
+	 * @param min the minimum value
+	 * @param max the maximum value
+	 * @param type the name of the type, for the error message
+	 * @return the value
+	 * @throws JSONException if the number is malformed or out of range
+	 */
+	private long nextInteger(long min, long max, String type) throws JSONException {
+		byte[] b = consumeNumber();
+		int off = literalStart, len = literalLength;
+		int i = off, end = off + len;
+		boolean negative = false;
+		if(i < end && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+		if(i == end) throw malformed(b, off, len);
+		// The value is accumulated negatively, because the negative range is larger
+		long limit = negative ? min : -max;
+		long multiplyLimit = limit / 10;
+		long result = 0;
+		for(; i < end; i++) {
+			int digit = b[i] - '0';
+			if(digit < 0 || digit > 9) throw malformed(b, off, len);
+			if(result < multiplyLimit) throw outOfRange(b, off, len, type);
+			result *= 10;
+			if(result < limit + digit) throw outOfRange(b, off, len, type);
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+	
+	private static JSONException malformed(byte[] b, int off, int len) {
+		return new JSONException("Malformed number '" + string(b, off, len, null) + "'");
+	}
+	
+	private static JSONException outOfRange(byte[] b, int off, int len, String type) {
+		return new JSONException("Value " + string(b, off, len, null) + " out of range for " + type);
+	}
+	
+	/**
+	 * Consume the next number. Unquoted numbers are not copied, they are
+	 * parsed from the buffer.
+	 * @return the array that contains the number, from {@code literalStart}
+	 *         with length {@code literalLength}
+	 * @throws JSONException if the next token is not a number or string
+	 */
+	private byte[] consumeNumber() throws JSONException {
+		JSONToken token = peek();
+		if(token != JSONToken.NUMBER && token != JSONToken.STRING)
+			throw unexpected(JSONToken.NUMBER);
+		if(quote == 0) {
+			peeked = null;
+			return buffer;
+		}
+		// Quoted numbers are rare, so these are read as String first
+		byte[] b = consumeString().getBytes(ISO_8859_1);
+		literalStart = 0;
+		literalLength = b.length;
+		return b;
+	}
+	
+	private void expect(JSONToken expected) throws JSONException {
+		if(peek() != expected) throw unexpected(expected);
+	}
+	
+	private JSONException unexpected(JSONToken expected) {
+		return new JSONException("Expected " + expected + " but got " + peeked + " instead");
+	}
+	
+	private void push(int scope) {
+		if(stackSize == stack.length)
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		stack[stackSize++] = scope;
+	}
+	
+	/**
+	 * Read the peeked string, name or literal
+	 */
+	private String consumeString() throws JSONException {
+		peeked = null;
+		if(quote == 0) return string(buffer, literalStart, literalLength, cache);
+		return readQuoted((byte) quote);
+	}
+	
+	/**
+	 * Skip the peeked string, name or literal
+	 */
+	private void skipString() throws JSONException {
+		peeked = null;
+		if(quote == 0) return;
+		byte quote = (byte) this.quote;
+		while(pos < limit || fill(1)) {
+			byte c = buffer[pos++];
+			if(c == quote) {
+				return;
+			} else if (c == '\\' && (pos < limit || fill(1))) {
+				pos++;
+			}
+		}
+		throw new JSONException("Unexpected end of input");
+	}
+	
+	private JSONToken doPeek() throws JSONException {
+		int scope = stack[stackSize - 1];
+		char c;
+		switch(scope) {
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			skipByteOrderMark();
+			if(nextClean() == -1) return JSONToken.END_DOCUMENT;
+			return peekValue();
+		case NONEMPTY_DOCUMENT:
+			if(nextClean() == -1) return JSONToken.END_DOCUMENT;
+			if(multipleDocuments) return peekValue();
+			throw new JSONException("Unexpected input after end of document");
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			if(nextCleanChar() == ']') {
+				read();
+				return JSONToken.END_ARRAY;
+			}
+			return peekValue();
+		case NONEMPTY_ARRAY:
+			c = nextCleanChar();
+			read();
+			if(c == ']') return JSONToken.END_ARRAY;
+			if(c != ',') throw new JSONException("Expected ',' or ']' but got '" + c + "' instead");
+			return peekValue();
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = nextCleanChar();
+			if(c == '}') {
+				read();
+				return JSONToken.END_OBJECT;
+			}
+			if(scope == NONEMPTY_OBJECT) {
+				read();
+				if(c != ',') throw new JSONException("Expected ',' or '}' but got '" + c + "' instead");
+				c = nextCleanChar();
+			}
+			stack[stackSize - 1] = DANGLING_NAME;
+			switch(c) {
+			case '"':
+			case '\'':
+				quote = read();
+				return JSONToken.NAME;
+			case '{':
+			case '[':
+				throw new JSONException("Expected a key, but got a value instead");
+			default:
+				readLiteral();
+				return JSONToken.NAME;
+			}
+		case DANGLING_NAME:
+			c = nextCleanChar();
+			read();
+			if(c != ':') throw new JSONException("Expected ':' but got '" + c + "' instead");
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			return peekValue();
+		default:
+			throw new JSONException("JSONReader is closed");
+		}
+	}
+	
+	/**
+	 * Determine the type of the next value
+	 */
+	private JSONToken peekValue() throws JSONException {
+		char c = nextCleanChar();
+		switch(c) {
+		case '{':
+			read();
+			return JSONToken.BEGIN_OBJECT;
+		case '[':
+			read();
+			return JSONToken.BEGIN_ARRAY;
+		case '"':
+		case '\'':
+			quote = read();
+			return JSONToken.STRING;
+		default:
+			readLiteral();
+			if(literalEquals(NULL))
+				return JSONToken.NULL;
+			if(literalEquals(TRUE) || literalEquals(FALSE))
+				return JSONToken.BOOLEAN;
+			c = (char) buffer[literalStart];
+			if((c >= '0' && c <= '9') || c == '-')
+				return JSONToken.NUMBER;
+			return JSONToken.STRING;
+		}
+	}
+	
+	/**
+	 * @param keyword a lower case keyword
+	 * @return true if the peeked literal equals the keyword, ignoring case
+	 */
+	private boolean literalEquals(String keyword) {
+		int l = keyword.length();
+		if(literalLength != l) return false;
+		for(int i = 0; i < l; i++) {
+			// Lower case ASCII letters, the keywords only consist of letters
+			if((buffer[literalStart + i] | 0x20) != keyword.charAt(i))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Read an unquoted literal, such as a number, boolean or null. The literal
+	 * is kept in the buffer, and its position is stored in
+	 * {@code literalStart} and {@code literalLength}.
+	 */
+	private void readLiteral() throws JSONException {
+		quote = 0;
+		int p = pos;
+		LOOP : while(true) {
+			if(p == limit) {
+				// Keep the literal contiguous in the buffer while reading more input
+				int length = p - pos;
+				boolean filled = fill(length + 1);
+				// The literal was moved to the start of the buffer, also at the end of the input
+				p = pos + length;
+				if(!filled) break;
+			}
+			switch(buffer[p]) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\r':
+			case ',':
+			case ':':
+			case '[':
+			case ']':
+			case '{':
+			case '}':
+			case '"':
+			case '\'':
+				break LOOP;
+			default:
+				p++;
+			}
+		}
+		literalStart = pos;
+		literalLength = p - pos;
+		pos = p;
+		if(literalLength == 0) throw new JSONException("Unexpected character '" + (char) (buffer[pos] & 0xFF) + "'");
+	}
+	
+	/**
+	 * Read a quoted string. Strings without escapes are decoded directly from
+	 * the buffer, other strings are collected in the scratch buffer first.
+	 * @param quote the quote that closes the string
+	 * @return the characters between the quotes
+	 */
+	private String readQuoted(byte quote) throws JSONException {
+		// Strings that are contained in the buffer are decoded in place
+		int ascii = 0;
+		for(int p = pos, l = limit; p < l; p++) {
+			byte c = buffer[p];
+			if(c == quote) {
+				int length = p - pos;
+				String result;
+				if(cache != null && cache.accepts(length)) {
+					result = cache.get(buffer, pos, length);
+				} else {
+					result = (ascii >= 0) ? new String(buffer, pos, length, ISO_8859_1)
+							: new String(buffer, pos, length, UTF_8);
+				}
+				pos = p + 1;
+				return result;
+			} else if (c == '\\') {
+				break;
+			}
+			ascii |= c;
+		}
+		// Otherwise the bytes are collected in the scratch buffer
+		scratchLength = 0;
+		do {
+			int start = pos;
+			for(int p = pos, l = limit; p < l; p++) {
+				byte c = buffer[p];
+				if(c == quote) {
+					append(buffer, start, p - start);
+					pos = p + 1;
+					return string(scratch, 0, scratchLength, cache);
+				} else if (c == '\\') {
+					append(buffer, start, p - start);
+					pos = p + 1;
+					readEscape();
+					start = pos;
+					p = pos - 1;
+					l = limit;
+				}
+			}
+			append(buffer, start, limit - start);
+			pos = limit;
+		} while(fill(1));
+		throw new JSONException("Unexpected end of input");
+	}
+	
+	/**
+	 * Append the character of an escape sequence to the scratch buffer, as
+	 * UTF-8. Other characters than those of the JSON escape sequences are
+	 * appended as they are.
+	 */
+	private void readEscape() throws JSONException {
+		if(pos == limit && !fill(1)) throw new JSONException("Unexpected end of input");
+		byte c = buffer[pos++];
+		switch(c) {
+		case 'b':
+			appendByte('\b');
+			break;
+		case 'f':
+			appendByte('\f');
+			break;
+		case 'n':
+			appendByte('\n');
+			break;
+		case 'r':
+			appendByte('\r');
+			break;
+		case 't':
+			appendByte('\t');
+			break;
+		case 'u':
+			if(limit - pos < 4 && !fill(4)) throw new JSONException("Unexpected end of input");
+			int codePoint = hex(pos);
+			pos += 4;
+			// A surrogate pair is written as two escape sequences
+			if(Character.isHighSurrogate((char) codePoint) && (limit - pos >= 6 || fill(6))
+					&& buffer[pos] == '\\' && buffer[pos + 1] == 'u') {
+				int low = hex(pos + 2);
+				if(Character.isLowSurrogate((char) low)) {
+					codePoint = Character.toCodePoint((char) codePoint, (char) low);
+					pos += 6;
+				}
+			}
+			appendCodePoint(codePoint);
+			break;
+		default:
+			// Quotes, slashes and backslashes, and any other character
+			appendByte(c);
+		}
+	}
+	
+	/**
+	 * @param p the position of four hexadecimal digits in the buffer
+	 * @return their value
+	 */
+	private int hex(int p) throws JSONException {
+		int value = 0;
+		for(int i = p; i < p + 4; i++) {
+			int c = buffer[i], digit;
+			if(c >= '0' && c <= '9') {
+				digit = c - '0';
+			} else if(c >= 'a' && c <= 'f') {
+				digit = c - 'a' + 10;
+			} else if(c >= 'A' && c <= 'F') {
+				digit = c - 'A' + 10;
+			} else {
+				throw new JSONException("Invalid escape sequence '\\u" + string(buffer, p, 4, null) + "'");
+			}
+			value = value << 4 | digit;
+		}
+		return value;
+	}
+	
+	/**
+	 * Append a code point to the scratch buffer as UTF-8
+	 */
+	private void appendCodePoint(int c) {
+		if(c < 0x80) {
+			appendByte(c);
+		} else if(c < 0x800) {
+			appendByte(0xC0 | c >> 6);
+			appendByte(0x80 | c & 0x3F);
+		} else if(c < 0x10000) {
+			appendByte(0xE0 | c >> 12);
+			appendByte(0x80 | c >> 6 & 0x3F);
+			appendByte(0x80 | c & 0x3F);
+		} else {
+			appendByte(0xF0 | c >> 18);
+			appendByte(0x80 | c >> 12 & 0x3F);
+			appendByte(0x80 | c >> 6 & 0x3F);
+			appendByte(0x80 | c & 0x3F);
+		}
+	}
+	
+	private void appendByte(int b) {
+		if(scratchLength == scratch.length)
+			scratch = Arrays.copyOf(scratch, scratch.length * 2);
+		scratch[scratchLength++] = (byte) b;
+	}
+	
+	/**
+	 * Append bytes to the scratch buffer
+	 */
+	private void append(byte[] b, int off, int len) {
+		if(scratchLength + len > scratch.length)
+			scratch = Arrays.copyOf(scratch, Math.max(scratchLength + len, scratch.length * 2));
+		System.arraycopy(b, off, scratch, scratchLength, len);
+		scratchLength += len;
+	}
+	
+	/**
+	 * Decode UTF-8 bytes to a String. Pure ASCII input is copied without
+	 * decoding. Short strings are taken from the cache, if any.
+	 */
+	private static String string(byte[] b, int off, int len, StringCache cache) {
+		if(cache != null && cache.accepts(len)) return cache.get(b, off, len);
+		for(int i = off, l = off + len; i < l; i++) {
+			if(b[i] < 0) return new String(b, off, len, UTF_8);
+		}
+		return new String(b, off, len, ISO_8859_1);
+	}
+	
+	/**
+	 * Skip the UTF-8 byte order mark at the start of the input
+	 */
+	private void skipByteOrderMark() throws JSONException {
+		if((limit - pos >= 3 || fill(3)) && buffer[pos] == (byte) 0xEF
+				&& buffer[pos + 1] == (byte) 0xBB && buffer[pos + 2] == (byte) 0xBF) {
+			pos += 3;
+		}
+	}
+	
+	/**
+	 * Skip whitespace
+	 * @return the next character that is not a space, without consuming it,
+	 *         or -1 at the end of the input
+	 */
+	private int nextClean() throws JSONException {
+		while(pos < limit || fill(1)) {
+			switch(buffer[pos]) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\r':
+				pos++;
+				continue;
+			default:
+				return buffer[pos];
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Skip whitespace
+	 * @return the next character that is not a space, without consuming it
+	 * @throws JSONException at the end of the input
+	 */
+	private char nextCleanChar() throws JSONException {
+		int c = nextClean();
+		if(c == -1) throw new JSONException("Unexpected end of input");
+		return (char) c;
+	}
+	
+	/**
+	 * Consume the next character, which should already be in the buffer
+	 */
+	private char read() {
+		return (char) (buffer[pos++] & 0xFF);
+	}
+	
+	/**
+	 * Read a block of input into the buffer. The unconsumed bytes are moved to
+	 * the start of the buffer first, and the buffer grows if it cannot hold
+	 * the requested amount of bytes.
+	 * @param minimum the minimum amount of unconsumed bytes
+	 * @return true if the buffer contains at least {@code minimum} unconsumed
+	 *         bytes, false if the end of the input was reached
+	 * @throws JSONException if the input could not be read
+	 */
+	private boolean fill(int minimum) throws JSONException {
+		if(in == null && reader == null && channel == null) return false;
+		byte[] buffer = this.buffer;
+		int remaining = limit - pos;
+		if(minimum > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(minimum, buffer.length * 2));
+		}
+		System.arraycopy(this.buffer, pos, buffer, 0, remaining);
+		this.buffer = buffer;
+		limit = remaining;
+		pos = 0;
+		try {
+			while(limit < minimum) {
+				int n = (in != null) ? in.read(buffer, limit, buffer.length - limit)
+						: (reader != null) ? encode() : copyMapped();
+				if(n == -1) return false;
+				limit += n;
+			}
+		} catch ( IOException e ) {
+			throw new JSONException(e);
+		}
+		return true;
+	}
+	
+	/**
+	 * Copy bytes of the mapped file into the free space of the buffer. The
+	 * next window of the file is mapped when the current one is read
+	 * completely.
+	 * @return the amount of bytes copied, or -1 at the end of the file
+	 * @throws IOException
+	 */
+	private int copyMapped() throws IOException {
+		MappedByteBuffer window = this.window;
+		if(window == null || !window.hasRemaining()) {
+			if(window != null) windowPosition += window.capacity();
+			long size = channel.size();
+			if(windowPosition >= size) return -1;
+			window = this.window = channel.map(MapMode.READ_ONLY, windowPosition,
+					Math.min(windowSize, size - windowPosition));
+		}
+		int n = Math.min(buffer.length - limit, window.remaining());
+		window.get(buffer, limit, n);
+		return n;
+	}
+	
+	/**
+	 * Read characters from the {@code Reader} and encode them as UTF-8 into the
+	 * free space of the buffer
+	 * @return the amount of bytes written, or -1 at the end of the input
+	 * @throws IOException
+	 */
+	private int encode() throws IOException {
+		byte[] buffer = this.buffer;
+		// Every character takes at most three bytes
+		int space = (buffer.length - limit) / 3;
+		if(space < 2) {
+			buffer = this.buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			space = (buffer.length - limit) / 3;
+		}
+		if(chars == null || chars.length < space) chars = new char[space];
+		char[] chars = this.chars;
+		int offset = 0;
+		if(pendingSurrogate != 0) {
+			chars[offset++] = pendingSurrogate;
+			pendingSurrogate = 0;
+		}
+		int n = reader.read(chars, offset, space - offset);
+		boolean eof = n == -1;
+		if(eof) {
+			if(offset == 0) return -1;
+			n = 0;
+		}
+		n += offset;
+		int p = limit;
+		for(int i = 0; i < n; i++) {
+			char c = chars[i];
+			if(c < 0x80) {
+				buffer[p++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[p++] = (byte) (0xC0 | (c >> 6));
+				buffer[p++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 == n && !eof) {
+				// Encode the pair when its low surrogate has been read
+				pendingSurrogate = c;
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(chars[i + 1])) {
+				int codePoint = Character.toCodePoint(c, chars[++i]);
+				buffer[p++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[p++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// Unpaired surrogates cannot be encoded
+				buffer[p++] = '?';
+			} else {
+				buffer[p++] = (byte) (0xE0 | (c >> 12));
+				buffer[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[p++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return p - limit;
+	}
+	
+}
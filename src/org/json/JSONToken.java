@@ -0,0 +1,84 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+/**
+ * The tokens a {@link JSONReader} can encounter in a JSON document.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public enum JSONToken {
+	
+	/**
+	 * The opening bracket of a JSON object
+	 */
+	BEGIN_OBJECT,
+	
+	/**
+	 * The closing bracket of a JSON object
+	 */
+	END_OBJECT,
+	
+	/**
+	 * The opening bracket of a JSON array
+	 */
+	BEGIN_ARRAY,
+	
+	/**
+	 * The closing bracket of a JSON array
+	 */
+	END_ARRAY,
+	
+	/**
+	 * The key of a key value pair in a JSON object
+	 */
+	NAME,
+	
+	/**
+	 * A quoted, or unquoted, string value
+	 */
+	STRING,
+	
+	/**
+	 * A number value
+	 */
+	NUMBER,
+	
+	/**
+	 * A {@code true} or {@code false} value
+	 */
+	BOOLEAN,
+	
+	/**
+	 * A {@code null} value
+	 */
+	NULL,
+	
+	/**
+	 * The end of the JSON document
+	 */
+	END_DOCUMENT
+	
+}
@@ -0,0 +1,736 @@
+package org.json;
+
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A {@code JSONWriter} writes a JSON document one token at a time. Because
+ * values are written to the underlying stream as they come, large
+ * documents can be written incrementally at constant memory. The
+ * {@link Encoder} is built on top of this writer, and
+ * {@link Encoder#encode(JSONWriter, JSONSerializable)} can be used to write
+ * {@code JSONSerializable} objects as part of a larger document.
+ * <pre>
+ * JSONWriter writer = new JSONWriter(out);
+ * writer.beginObject();
+ * writer.name("count").value(items.size());
+ * writer.name("items").beginArray();
+ * for(Item item : items)
+ * 	Encoder.encode(writer, item);
+ * writer.endArray();
+ * writer.endObject();
+ * writer.flush();
+ * </pre>
+ * The document is encoded as UTF-8 into a byte buffer, which is written to
+ * an {@code OutputStream} in large chunks whenever it fills up and when the
+ * writer is flushed or the document is complete. When writing to a
+ * {@code Writer} the buffered bytes are decoded again, so an
+ * {@code OutputStream} should be preferred.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class JSONWriter implements Closeable, Flushable {
+	
+	/**
+	 * The default size of the output buffer in bytes
+	 */
+	public final static int DEFAULT_BUFFER_SIZE = 8192;
+	
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final static String NULL = "null";
+	
+	/**
+	 * The two digits of every number from 0 to 99
+	 */
+	private final static byte[] DIGIT_PAIRS = new byte[200];
+	
+	private final static byte[] HEX_DIGITS = {
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+	};
+	
+	/**
+	 * For every ASCII character the character that follows the backslash in
+	 * its escape sequence, {@code 'u'} for a unicode escape sequence, or
+	 * zero if the character is written as is
+	 */
+	private final static byte[] ESCAPES = new byte[128];
+	
+	/**
+	 * A line break followed by spaces, to start indented lines with
+	 */
+	private final static byte[] NEWLINE = new byte[129];
+	
+	/**
+	 * The maximum amount of characters that is copied at once
+	 */
+	private final static int RUN_LENGTH = 512;
+	
+	static {
+		Arrays.fill(NEWLINE, (byte) ' ');
+		NEWLINE[0] = '\n';
+		for(int i = 0; i < ' '; i++) ESCAPES[i] = 'u';
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\f'] = 'f';
+		ESCAPES['\r'] = 'r';
+		for(int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+			DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+		}
+	}
+	
+	/*
+	 * The scopes in which the writer can be
+	 */
+	private final static int EMPTY_DOCUMENT = 0;
+	private final static int NONEMPTY_DOCUMENT = 1;
+	private final static int EMPTY_OBJECT = 2;
+	private final static int NONEMPTY_OBJECT = 3;
+	private final static int DANGLING_NAME = 4;
+	private final static int EMPTY_ARRAY = 5;
+	private final static int NONEMPTY_ARRAY = 6;
+	
+	/*
+	 * At most one of the sinks is set. Without a sink the buffer grows to
+	 * hold the entire document.
+	 */
+	private final OutputStream out;
+	private final Writer writer;
+	private final int indent;
+	
+	private byte[] buffer;
+	private int count = 0;
+	
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+	
+	/**
+	 * True to write a line break after every document instead of flushing
+	 */
+	private boolean multipleDocuments = false;
+	
+	/**
+	 * Construct a new {@code JSONWriter}
+	 * @param out the Writer
+	 */
+	public JSONWriter(Writer out) {
+		this(out, 0);
+	}
+	
+	/**
+	 * Construct a new {@code JSONWriter} that pretty prints the document
+	 * @param out the Writer
+	 * @param indent the amount of spaces to indent nested objects with, or
+	 *        {@code 0} to write the document without whitespace
+	 */
+	public JSONWriter(Writer out, int indent) {
+		this(null, out, indent, DEFAULT_BUFFER_SIZE);
+		if(out == null) throw new NullPointerException();
+	}
+	
+	/**
+	 * Construct a new {@code JSONWriter} that writes UTF-8 encoded JSON
+	 * @param out the OutputStream
+	 */
+	public JSONWriter(OutputStream out) {
+		this(out, 0);
+	}
+	
+	/**
+	 * Construct a new {@code JSONWriter} that writes pretty printed, UTF-8
+	 * encoded JSON
+	 * @param out the OutputStream
+	 * @param indent the amount of spaces to indent nested objects with, or
+	 *        {@code 0} to write the document without whitespace
+	 */
+	public JSONWriter(OutputStream out, int indent) {
+		this(out, indent, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Construct a new {@code JSONWriter} that writes pretty printed, UTF-8
+	 * encoded JSON
+	 * @param out the OutputStream
+	 * @param indent the amount of spaces to indent nested objects with, or
+	 *        {@code 0} to write the document without whitespace
+	 * @param bufferSize the size of the output buffer in bytes
+	 */
+	public JSONWriter(OutputStream out, int indent, int bufferSize) {
+		this(out, null, indent, bufferSize);
+		if(out == null) throw new NullPointerException();
+	}
+	
+	/**
+	 * Construct a new {@code JSONWriter} that keeps the document in memory
+	 * @param indent the amount of spaces to indent nested objects with
+	 * @see #toByteArray()
+	 */
+	JSONWriter(int indent) {
+		this(null, null, indent, 256);
+	}
+	
+	private JSONWriter(OutputStream out, Writer writer, int indent, int bufferSize) {
+		if(bufferSize < 16) throw new IllegalArgumentException("Buffer size should be at least 16 bytes");
+		this.out = out;
+		this.writer = writer;
+		this.indent = Math.max(0, indent);
+		this.buffer = new byte[bufferSize];
+		this.stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+	
+	/**
+	 * Write the opening bracket of an object
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter beginObject() throws IOException {
+		beforeValue();
+		push(EMPTY_OBJECT);
+		write('{');
+		return this;
+	}
+	
+	/**
+	 * Write the closing bracket of an object
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter endObject() throws IOException {
+		int scope = stack[stackSize - 1];
+		if(scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) throw new JSONException("Not in an object");
+		stackSize--;
+		if(scope == NONEMPTY_OBJECT) newline();
+		write('}');
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write the opening bracket of an array
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter beginArray() throws IOException {
+		beforeValue();
+		push(EMPTY_ARRAY);
+		write('[');
+		return this;
+	}
+	
+	/**
+	 * Write the closing bracket of an array
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter endArray() throws IOException {
+		int scope = stack[stackSize - 1];
+		if(scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) throw new JSONException("Not in an array");
+		stackSize--;
+		write(']');
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write the key of a key value pair. The value should be written next.
+	 * @param name the key
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter name(String name) throws IOException {
+		if(name == null) throw new JSONException("Name cannot be null");
+		beforeName();
+		writeString(name);
+		afterName();
+		return this;
+	}
+	
+	/**
+	 * Write a key from a {@code NameTable}, which is encoded only once
+	 * @param names the names
+	 * @param index the index of the key in the table
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter name(NameTable names, int index) throws IOException {
+		encodedName(names.encoded(index, false), names.encoded(index, true));
+		return this;
+	}
+	
+	/**
+	 * Write a key that is already encoded by {@link #encodeName}
+	 * @param name the encoded key with the compact separator
+	 * @param prettyName the encoded key with the separator for pretty printing
+	 * @throws IOException
+	 */
+	void encodedName(byte[] name, byte[] prettyName) throws IOException {
+		beforeName();
+		byte[] b = (indent > 0) ? prettyName : name;
+		require(b.length);
+		System.arraycopy(b, 0, buffer, count, b.length);
+		count += b.length;
+	}
+	
+	/**
+	 * Write a String value
+	 * @param value the String, or {@code null}
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(String value) throws IOException {
+		if(value == null) return nullValue();
+		beforeValue();
+		writeString(value);
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write a boolean value
+	 * @param value the boolean
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(boolean value) throws IOException {
+		beforeValue();
+		writeAscii(value ? "true" : "false");
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write an integer value
+	 * @param value the integer
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(long value) throws IOException {
+		beforeValue();
+		writeLong(value);
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write a floating point value, as the shortest decimal that reads back
+	 * as the same value
+	 * @param value the float
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(float value) throws IOException {
+		beforeValue();
+		require(DoubleConversion.MAX_LENGTH);
+		count = DoubleConversion.write(value, buffer, count);
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write a floating point value, as the shortest decimal that reads back
+	 * as the same value
+	 * @param value the double
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(double value) throws IOException {
+		beforeValue();
+		require(DoubleConversion.MAX_LENGTH);
+		count = DoubleConversion.write(value, buffer, count);
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write a number value
+	 * @param value the number, or {@code null}
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter value(Number value) throws IOException {
+		if(value == null) return nullValue();
+		if(value instanceof Double) return value(value.doubleValue());
+		if(value instanceof Float) return value(value.floatValue());
+		if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+			return value(value.longValue());
+		beforeValue();
+		writeRaw(value.toString());
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Write a null value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JSONWriter nullValue() throws IOException {
+		beforeValue();
+		writeAscii(NULL);
+		afterValue();
+		return this;
+	}
+	
+	/**
+	 * Allow multiple documents to be written, each followed by a line break,
+	 * as in JSON Lines. Complete documents are kept in the buffer until it
+	 * is full or {@link #flush()} is called. The indentation should be 0,
+	 * so that every document is written on a single line.
+	 * @param enabled true to write multiple documents
+	 */
+	public void setMultipleDocuments(boolean enabled) {
+		this.multipleDocuments = enabled;
+	}
+
+	/**
+	 * Write the buffered output and flush the underlying stream
+	 * @throws IOException
+	 */
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		if(out != null) out.flush();
+		else if(writer != null) writer.flush();
+	}
+	
+	/**
+	 * Write the buffered output and close the underlying stream
+	 * @throws IOException
+	 * @throws JSONException if the document is incomplete
+	 */
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		if(out != null) out.close();
+		else if(writer != null) writer.close();
+		if(stackSize > 1 || stack[0] != NONEMPTY_DOCUMENT && !multipleDocuments)
+			throw new JSONException("Incomplete document");
+	}
+	
+	/**
+	 * @return the UTF-8 encoded document of a writer without a sink
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, count);
+	}
+	
+	private void push(int scope) {
+		if(stackSize == stack.length)
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		stack[stackSize++] = scope;
+	}
+	
+	private void beforeName() throws IOException {
+		int scope = stack[stackSize - 1];
+		if(scope == NONEMPTY_OBJECT) {
+			// Separate keys with commas
+			write(',');
+		} else if(scope != EMPTY_OBJECT) {
+			throw new JSONException("Names can only be written in an object");
+		}
+		stack[stackSize - 1] = DANGLING_NAME;
+		newline();
+	}
+	
+	private void afterName() throws IOException {
+		if(indent > 0) writeAscii(" : ");
+		else write(':');
+	}
+	
+	private void beforeValue() throws IOException {
+		switch(stack[stackSize - 1]) {
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			break;
+		case DANGLING_NAME:
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			break;
+		case NONEMPTY_ARRAY:
+			// Commas between values
+			write(',');
+			if(indent > 0) write(' ');
+			break;
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			if(indent > 0) write(' ');
+			break;
+		case NONEMPTY_DOCUMENT:
+			if(multipleDocuments) break;
+			throw new JSONException("A document can only contain one value");
+		default:
+			throw new JSONException("Expected a name");
+		}
+	}
+	
+	/**
+	 * Write the buffer to the sink once the document is complete, so that a
+	 * document is never left behind in the buffer. When writing multiple
+	 * documents, they are separated by a line break and collected in the
+	 * buffer instead.
+	 */
+	private void afterValue() throws IOException {
+		if(stackSize > 1) return;
+		if(multipleDocuments) write('\n');
+		else flushBuffer();
+	}
+	
+	/**
+	 * Start a new line, indented to the current depth, when pretty printing
+	 */
+	private void newline() throws IOException {
+		if(indent == 0) return;
+		int l = (stackSize - 1) * indent + 1;
+		require(l);
+		// Copy the line break and the indentation in one go where possible
+		System.arraycopy(NEWLINE, 0, buffer, count, Math.min(l, NEWLINE.length));
+		for (int i = NEWLINE.length; i < l; i++)
+			buffer[count + i] = ' ';
+		count += l;
+	}
+	
+	/**
+	 * Make room for at least the given amount of bytes in the buffer. The
+	 * buffer is only flushed between complete UTF-8 sequences, so that the
+	 * output can be decoded in chunks for a {@code Writer}.
+	 * @param amount the amount of bytes
+	 * @throws IOException
+	 */
+	private void require(int amount) throws IOException {
+		if(count + amount <= buffer.length) return;
+		flushBuffer();
+		if(amount > buffer.length - count)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + amount));
+	}
+	
+	/**
+	 * Write the buffered bytes to the sink, if any
+	 * @throws IOException
+	 */
+	private void flushBuffer() throws IOException {
+		if(count == 0) return;
+		if(out != null) {
+			out.write(buffer, 0, count);
+			count = 0;
+		} else if(writer != null) {
+			writer.write(new String(buffer, 0, count, UTF_8));
+			count = 0;
+		}
+	}
+	
+	private void write(char c) throws IOException {
+		if(count == buffer.length) require(1);
+		buffer[count++] = (byte) c;
+	}
+	
+	/**
+	 * Write the digits of an integer directly into the buffer, two at a time
+	 * @param value the integer
+	 * @throws IOException
+	 */
+	private void writeLong(long value) throws IOException {
+		require(20);
+		if(value < 0) {
+			if(value == Long.MIN_VALUE) {
+				// Cannot be negated
+				writeAscii("-9223372036854775808");
+				return;
+			}
+			buffer[count++] = '-';
+			value = -value;
+		}
+		int length = 1;
+		for(long p = 10; length < 19 && value >= p; p *= 10) length++;
+		int pos = count + length;
+		// Long division is slower, so it is only used for the upper digits
+		while(value > Integer.MAX_VALUE) {
+			int r = (int) (value % 100);
+			value /= 100;
+			buffer[--pos] = DIGIT_PAIRS[2 * r + 1];
+			buffer[--pos] = DIGIT_PAIRS[2 * r];
+		}
+		int v = (int) value;
+		while(v >= 100) {
+			int r = v % 100;
+			v /= 100;
+			buffer[--pos] = DIGIT_PAIRS[2 * r + 1];
+			buffer[--pos] = DIGIT_PAIRS[2 * r];
+		}
+		if(v >= 10) {
+			buffer[--pos] = DIGIT_PAIRS[2 * v + 1];
+			buffer[--pos] = DIGIT_PAIRS[2 * v];
+		} else {
+			buffer[--pos] = (byte) ('0' + v);
+		}
+		count += length;
+	}
+	
+	/**
+	 * Write a String that only contains ASCII characters
+	 * @param s the String
+	 * @throws IOException
+	 */
+	private void writeAscii(String s) throws IOException {
+		int l = s.length();
+		require(l);
+		for (int i = 0; i < l; i++)
+			buffer[count++] = (byte) s.charAt(i);
+	}
+	
+	/**
+	 * Write a String as UTF-8, without escaping it
+	 * @param s the String
+	 * @throws IOException
+	 */
+	private void writeRaw(String s) throws IOException {
+		for (int i = 0, l = s.length(); i < l; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				write(c);
+			} else {
+				i = writeUtf8(s, i, c);
+			}
+		}
+	}
+	
+	/**
+	 * Encode a non ASCII character as UTF-8. Unpaired surrogates are
+	 * written as a question mark.
+	 * @param s the String
+	 * @param i the index of the character
+	 * @param c the character
+	 * @return the index of the last character that was consumed
+	 * @throws IOException
+	 */
+	private int writeUtf8(String s, int i, char c) throws IOException {
+		require(4);
+		if(c < 0x800) {
+			buffer[count++] = (byte) (0xC0 | c >> 6);
+			buffer[count++] = (byte) (0x80 | c & 0x3F);
+		} else if(Character.isSurrogate(c)) {
+			char low;
+			if(Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(low = s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, low);
+				buffer[count++] = (byte) (0xF0 | codePoint >> 18);
+				buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				buffer[count++] = (byte) (0x80 | codePoint & 0x3F);
+				return i + 1;
+			}
+			buffer[count++] = '?';
+		} else {
+			buffer[count++] = (byte) (0xE0 | c >> 12);
+			buffer[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+			buffer[count++] = (byte) (0x80 | c & 0x3F);
+		}
+		return i;
+	}
+	
+	/**
+	 * Escape and quote a key, and encode it as UTF-8 together with the
+	 * separator that follows it
+	 * @param name the key
+	 * @param pretty true for the separator used when pretty printing
+	 * @return the encoded key
+	 */
+	static byte[] encodeName(String name, boolean pretty) {
+		try {
+			JSONWriter w = new JSONWriter(0);
+			w.writeString(name);
+			w.writeAscii(pretty ? " : " : ":");
+			return w.toByteArray();
+		} catch ( IOException e ) {
+			// Unlikely to ever happen since there is no sink
+			throw new JSONException(e);
+		}
+	}
+	
+	/**
+	 * Write an escaped String between quotes. Runs of ASCII characters that
+	 * need no escaping are copied straight into the buffer.
+	 * @param s String to be escaped
+	 * @throws IOException
+	 */
+	private void writeString(String s) throws IOException {
+		write('"');
+		for (int i = 0, l = s.length(); i < l; ) {
+			require(Math.min(l - i, RUN_LENGTH));
+			byte[] buffer = this.buffer;
+			int n = count, end = i + Math.min(l - i, buffer.length - n);
+			char c = 0;
+			while (i < end && (c = s.charAt(i)) < 0x80 && ESCAPES[c] == 0) {
+				buffer[n++] = (byte) c;
+				i++;
+			}
+			count = n;
+			// The run ended because the buffer is full
+			if (i == end) continue;
+			if (c < 0x80) {
+				if (ESCAPES[c] == 'u') {
+					writeUnicodeEscape(c);
+				} else {
+					require(2);
+					this.buffer[count++] = '\\';
+					this.buffer[count++] = ESCAPES[c];
+				}
+				i++;
+			} else if (c < '\u00a0' || (c >= '\u2000' && c < '\u2100')) {
+				writeUnicodeEscape(c);
+				i++;
+			} else {
+				i = writeUtf8(s, i, c) + 1;
+			}
+		}
+		write('"');
+	}
+	
+	/**
+	 * Write a character as unicode escape sequence
+	 * @param c the character
+	 * @throws IOException
+	 */
+	private void writeUnicodeEscape(char c) throws IOException {
+		require(6);
+		buffer[count++] = '\\';
+		buffer[count++] = 'u';
+		buffer[count++] = HEX_DIGITS[c >> 12];
+		buffer[count++] = HEX_DIGITS[c >> 8 & 0xF];
+		buffer[count++] = HEX_DIGITS[c >> 4 & 0xF];
+		buffer[count++] = HEX_DIGITS[c & 0xF];
+	}
+	
+}
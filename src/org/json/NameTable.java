@@ -0,0 +1,257 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A {@code NameTable} maps the attribute names of a class to their index.
+ * Names are looked up by their UTF-8 bytes, so the {@link JSONReader} can
+ * match a name in its input buffer without creating a String.
+ * <pre>
+ * private final static NameTable NAMES = new NameTable("id", "name");
+ * 
+ * reader.beginObject();
+ * while(reader.hasNext()) {
+ * 	switch(reader.nextName(NAMES)) {
+ * 	case 0:
+ * 		id = reader.nextLong();
+ * 		break;
+ * 	case 1:
+ * 		name = reader.nextString();
+ * 		break;
+ * 	default:
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.endObject();
+ * </pre>
+ * The table size is chosen such that the names do not collide where
+ * possible, so most lookups compare a single name. The names are also
+ * encoded once for {@link JSONWriter#name(NameTable, int)}. A table can be
+ * shared between threads.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class NameTable {
+	
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * The table size is at most this factor times the amount of names
+	 */
+	private final static int MAX_LOAD = 16;
+	
+	/**
+	 * The UTF-8 bytes of the names
+	 */
+	private final byte[][] names;
+	
+	/**
+	 * For every position in the table the index of the name plus one, or
+	 * zero if the position is empty
+	 */
+	private final int[] table;
+	private final int mask;
+	
+	/**
+	 * True for names that contain quotes or backslashes, which appear
+	 * escaped in the input
+	 */
+	private final boolean[] escaped;
+	
+	/**
+	 * The names as written by the {@link JSONWriter}, quoted and followed by
+	 * the compact separator or the separator for pretty printing
+	 */
+	private final byte[][] encoded;
+	private final byte[][] prettyEncoded;
+	
+	/**
+	 * Construct a new {@code NameTable}
+	 * @param names the names, a name its index is its position in the array
+	 */
+	public NameTable(String... names) {
+		this.names = new byte[names.length][];
+		this.escaped = new boolean[names.length];
+		this.encoded = new byte[names.length][];
+		this.prettyEncoded = new byte[names.length][];
+		int[] hashes = new int[names.length];
+		for(int i = 0; i < names.length; i++) {
+			this.names[i] = names[i].getBytes(UTF_8);
+			hashes[i] = hash(this.names[i], 0, this.names[i].length);
+			escaped[i] = names[i].indexOf('"') >= 0 || names[i].indexOf('\'') >= 0 || names[i].indexOf('\\') >= 0;
+			encoded[i] = JSONWriter.encodeName(names[i], false);
+			prettyEncoded[i] = JSONWriter.encodeName(names[i], true);
+		}
+		int size = 2;
+		while(size < 2 * names.length) size <<= 1;
+		int[] table = new int[size];
+		// Grow the table until no names collide, or the table gets too large
+		while(!fill(table, hashes, false) && size < MAX_LOAD * names.length) {
+			size <<= 1;
+			table = new int[size];
+		}
+		if(size >= MAX_LOAD * names.length) {
+			Arrays.fill(table, 0);
+			fill(table, hashes, true);
+		}
+		this.table = table;
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Put the names in the table
+	 * @param probe true to put colliding names in the next free position
+	 * @return false if two names collided and {@code probe} is false
+	 */
+	private static boolean fill(int[] table, int[] hashes, boolean probe) {
+		int mask = table.length - 1;
+		for(int i = 0; i < hashes.length; i++) {
+			int p = mix(hashes[i]) & mask;
+			while(table[p] != 0) {
+				if(!probe) return false;
+				p = (p + 1) & mask;
+			}
+			table[p] = i + 1;
+		}
+		return true;
+	}
+	
+	/**
+	 * @param b the bytes
+	 * @param off the offset of the name
+	 * @param len the length of the name
+	 * @return the index of the name, or -1 if it is not in the table
+	 */
+	int find(byte[] b, int off, int len) {
+		return find(b, off, len, hash(b, off, len));
+	}
+	
+	/**
+	 * @param b the bytes
+	 * @param off the offset of the name
+	 * @param len the length of the name
+	 * @param hash the hash of the name, as computed by {@link #hash}
+	 * @return the index of the name, or -1 if it is not in the table
+	 */
+	int find(byte[] b, int off, int len, int hash) {
+		for(int p = mix(hash) & mask; ; p = (p + 1) & mask) {
+			int entry = table[p];
+			if(entry == 0) return -1;
+			byte[] name = names[entry - 1];
+			if(name.length == len && equals(name, b, off)) return entry - 1;
+		}
+	}
+	
+	/**
+	 * @return the amount of names
+	 */
+	public int size() {
+		return names.length;
+	}
+	
+	/**
+	 * @param index the index of a name
+	 * @param pretty true for the separator used when pretty printing
+	 * @return the name as written by the {@code JSONWriter}
+	 */
+	byte[] encoded(int index, boolean pretty) {
+		return pretty ? prettyEncoded[index] : encoded[index];
+	}
+	
+	/**
+	 * @param index the index of a name
+	 * @return the length of the name in bytes
+	 */
+	int length(int index) {
+		return names[index].length;
+	}
+	
+	/**
+	 * Check if the input continues with a name, followed by the closing
+	 * quote
+	 * @param index the index of the name
+	 * @param b the bytes
+	 * @param off the offset of the name in the input
+	 * @param limit the end of the input
+	 * @param quote the closing quote
+	 * @return true if the name matches
+	 */
+	boolean matches(int index, byte[] b, int off, int limit, byte quote) {
+		byte[] name = names[index];
+		int end = off + name.length;
+		return end < limit && b[end] == quote && !escaped[index] && equals(name, b, off);
+	}
+	
+	/**
+	 * @param index the index of a name
+	 * @param b the bytes
+	 * @param off the offset of the name
+	 * @param len the length of the name
+	 * @return true if the name equals the name at the index
+	 */
+	boolean matches(int index, byte[] b, int off, int len) {
+		return names[index].length == len && equals(names[index], b, off);
+	}
+	
+	/**
+	 * @param name the name
+	 * @return the index of the name, or -1 if it is not in the table
+	 */
+	public int find(String name) {
+		byte[] b = name.getBytes(UTF_8);
+		return find(b, 0, b.length);
+	}
+	
+	/**
+	 * The hash of a name. The {@code JSONReader} computes it while it
+	 * searches for the end of the name.
+	 */
+	static int hash(byte[] b, int off, int len) {
+		int h = 0;
+		for(int i = off, l = off + len; i < l; i++)
+			h = 31 * h + b[i];
+		return h;
+	}
+	
+	/**
+	 * Spread the bits of the hash, so that the lower bits depend on all
+	 * bytes of the name
+	 */
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	private static boolean equals(byte[] name, byte[] b, int off) {
+		for(int i = 0; i < name.length; i++) {
+			if(name[i] != b[off + i]) return false;
+		}
+		return true;
+	}
+	
+}
@@ -0,0 +1,770 @@
+package org.json;
+
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A {@code ParallelDecoder} decodes a JSON Lines (NDJSON) input on multiple
+ * threads. The input is split into chunks that end at a line break, and the
+ * chunks are decoded in parallel while the next chunks are read. The
+ * records are handed to a {@link Handler}, either in the order of the input
+ * or, for more throughput, in the order in which they are decoded.
+ * <p>
+ * Documents that consist of one large array can be decoded in parallel
+ * with {@link #decodeArray(InputStream)}, or without reading them into the
+ * heap with {@link #decodeArray(Path)}.
+ * <pre>
+ * ParallelDecoder&lt;PlainObjectWrapper&gt; decoder = new ParallelDecoder&lt;PlainObjectWrapper&gt;(PlainObjectWrapper.class);
+ * decoder.setThreads(8);
+ * decoder.decode(inputStream, new ParallelDecoder.Handler&lt;PlainObjectWrapper&gt;() {
+ * 	public void handle(PlainObjectWrapper record) {
+ * 		// ...
+ * 	}
+ * });
+ * </pre>
+ * A decoder can be reused, but should not be configured while it is used.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class ParallelDecoder<T extends JSONSerializable> {
+	
+	/**
+	 * Receives the decoded records
+	 */
+	public interface Handler<T> {
+		
+		/**
+		 * Handle a decoded record. When the records are not ordered, this
+		 * method is called from multiple threads at the same time.
+		 * @param record the record, or {@code null} for a JSON null
+		 */
+		void handle(T record);
+		
+	}
+	
+	/**
+	 * The default size of the chunks in bytes
+	 */
+	public final static int DEFAULT_CHUNK_SIZE = 1 << 20;
+	
+	/**
+	 * The largest array that can be allocated
+	 */
+	private final static int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	
+	private final Class<T> recordType;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private long windowSize = JSONReader.DEFAULT_WINDOW_SIZE;
+	private boolean ordered = true;
+	private ExecutorService executor = null;
+	
+	/**
+	 * Construct a new {@code ParallelDecoder}
+	 * @param recordType the class of the records
+	 */
+	public ParallelDecoder(Class<T> recordType) {
+		this.recordType = recordType;
+	}
+	
+	/**
+	 * Set the amount of threads. Without an executor, a pool with this many
+	 * threads is created for every input. With an executor, this limits the
+	 * amount of chunks that are decoded at the same time. Defaults to the
+	 * amount of available processors.
+	 * @param threads the amount of threads
+	 */
+	public void setThreads(int threads) {
+		if(threads > 0) {
+			this.threads = threads;
+		}
+	}
+	
+	/**
+	 * Set the size of the chunks. Chunks are extended to the end of a line,
+	 * so lines longer than the chunk size are never split. At most two
+	 * chunks per thread are kept in memory.
+	 * @param chunkSize the size of the chunks in bytes
+	 */
+	public void setChunkSize(int chunkSize) {
+		if(chunkSize > 0) {
+			this.chunkSize = chunkSize;
+		}
+	}
+	
+	/**
+	 * Set the size of the windows in which {@link #decodeArray(Path)} maps
+	 * a file, at most about 2 GB. Defaults to
+	 * {@link JSONReader#DEFAULT_WINDOW_SIZE}.
+	 * @param windowSize the size of the windows in bytes
+	 */
+	public void setWindowSize(long windowSize) {
+		if(windowSize > 0) {
+			this.windowSize = Math.min(windowSize, MAX_ARRAY_SIZE);
+		}
+	}
+	
+	/**
+	 * Set whether the records are handed to the handler in the order of the
+	 * input, on the thread that calls {@link #decode}. Otherwise they are
+	 * handed over from the decoding threads as soon as they are decoded.
+	 * Defaults to true.
+	 * @param ordered true to keep the order of the input
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+	
+	/**
+	 * Decode the chunks on the given executor instead of on a new
+	 * {@code ForkJoinPool}. The executor is not shut down by the decoder.
+	 * @param executor the executor, or {@code null} to create a pool
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Decode all records of an input. The stream is not closed afterwards.
+	 * @param io InputStream with UTF-8 encoded JSON Lines
+	 * @param handler the handler for the records
+	 * @throws JSONException if a record could not be decoded
+	 * @throws IOException
+	 */
+	public void decode(InputStream io, Handler<? super T> handler) throws JSONException, IOException {
+		decode(io, handler, ordered);
+	}
+	
+	/**
+	 * Decode all records of an input into a list, in the order of the input
+	 * @param io InputStream with UTF-8 encoded JSON Lines
+	 * @return the records
+	 * @throws JSONException if a record could not be decoded
+	 * @throws IOException
+	 */
+	public List<T> decodeList(InputStream io) throws JSONException, IOException {
+		final List<T> list = new ArrayList<T>();
+		decode(io, new Handler<T>() {
+			@Override
+			public void handle(T record) {
+				list.add(record);
+			}
+		}, true);
+		return list;
+	}
+	
+	/**
+	 * Decode all records of an input on the executor, or on a new pool
+	 */
+	private void decode(InputStream io, Handler<? super T> handler, boolean ordered) throws IOException {
+		ExecutorService pool = executor != null ? executor : new ForkJoinPool(threads);
+		try {
+			if(ordered) decodeOrdered(new Chunks(io, chunkSize), pool, handler);
+			else decodeUnordered(new Chunks(io, chunkSize), pool, handler);
+		} finally {
+			if(pool != executor) pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Decode the elements of a document that consists of one large JSON
+	 * array in parallel. The input is read completely into one array, and
+	 * scanned for the boundaries of the elements before they are decoded.
+	 * Inputs that do not fit in an array can be decoded from a file with
+	 * {@link #decodeArray(Path)}. The stream is not closed afterwards.
+	 * @param io InputStream with a UTF-8 encoded JSON array
+	 * @return the elements, in the order of the array
+	 * @throws JSONException if the input is not an array, or an element
+	 * 	could not be decoded
+	 * @throws IOException if the input does not fit in an array
+	 */
+	public List<T> decodeArray(InputStream io) throws JSONException, IOException {
+		byte[] input = new byte[chunkSize];
+		int length = 0;
+		for(int n; (n = io.read(input, length, input.length - length)) != -1; ) {
+			length += n;
+			if(length == input.length) {
+				if(length == MAX_ARRAY_SIZE)
+					throw new IOException("The input does not fit in an array of " + MAX_ARRAY_SIZE
+							+ " bytes, decode it from a file with decodeArray(Path)");
+				input = Arrays.copyOf(input, grow(length));
+			}
+		}
+		return decodeArray(input, 0, length);
+	}
+	
+	/**
+	 * Decode the elements of a file that consists of one large JSON array
+	 * in parallel. The file is memory mapped in windows and scanned for the
+	 * boundaries of the elements, so only the offsets of the elements are
+	 * kept in the heap. Every element is copied from the mapped file into a
+	 * buffer of the decoding thread when it is decoded.
+	 * @param path the path of a UTF-8 encoded JSON array
+	 * @return the elements, in the order of the array
+	 * @throws JSONException if the input is not an array, or an element
+	 * 	could not be decoded
+	 * @throws IOException
+	 */
+	public List<T> decodeArray(Path path) throws JSONException, IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final long[] bounds = scanArray(channel, windowSize);
+			return decodeElements(bounds.length / 2, new Elements() {
+				@Override
+				Callable<Void> batch(final List<T> list, final int from, final int to) {
+					return new Callable<Void>() {
+						@Override
+						public Void call() throws IOException {
+							MappedByteBuffer window = null;
+							long windowStart = 0;
+							byte[] element = new byte[0];
+							for(int i = from; i < to; i++) {
+								long start = bounds[2 * i];
+								long end = bounds[2 * i + 1];
+								if(end - start > MAX_ARRAY_SIZE)
+									throw new JSONException("Element " + i + " is larger than " + MAX_ARRAY_SIZE + " bytes");
+								int length = (int) (end - start);
+								if(window == null || start < windowStart || end > windowStart + window.capacity()) {
+									windowStart = start;
+									window = channel.map(MapMode.READ_ONLY, start,
+											Math.min(Math.max(windowSize, length), channel.size() - start));
+								}
+								if(element.length < length)
+									element = new byte[Math.max(length, Math.min(element.length * 2, MAX_ARRAY_SIZE))];
+								ByteBuffer bytes = window.duplicate();
+								bytes.position((int) (start - windowStart));
+								bytes.get(element, 0, length);
+								list.set(i, Decoder.decode(recordType, element, 0, length));
+							}
+							return null;
+						}
+					};
+				}
+			});
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Decode the elements of a document that consists of one large JSON
+	 * array in parallel
+	 * @param input the UTF-8 encoded document
+	 * @param off the offset of the document
+	 * @param len the length of the document
+	 * @return the elements, in the order of the array
+	 * @throws JSONException if the input is not an array, or an element
+	 * 	could not be decoded
+	 * @throws IOException if the thread was interrupted
+	 */
+	public List<T> decodeArray(final byte[] input, int off, int len) throws JSONException, IOException {
+		final int[] bounds = scanArray(input, off, len);
+		return decodeElements(bounds.length / 2, new Elements() {
+			@Override
+			Callable<Void> batch(final List<T> list, final int from, final int to) {
+				return new Callable<Void>() {
+					@Override
+					public Void call() throws JSONException {
+						// Every batch sets its own range of the list
+						for(int i = from; i < to; i++)
+							list.set(i, Decoder.decode(recordType, input, bounds[2 * i], bounds[2 * i + 1] - bounds[2 * i]));
+						return null;
+					}
+				};
+			}
+		});
+	}
+	
+	/**
+	 * Creates the tasks that decode the elements of an array
+	 */
+	private abstract class Elements {
+		
+		/**
+		 * @param list the list to set the elements in
+		 * @param from the index of the first element of the batch
+		 * @param to the index after the last element of the batch
+		 * @return a task that decodes the batch
+		 */
+		abstract Callable<Void> batch(List<T> list, int from, int to);
+		
+	}
+	
+	/**
+	 * Decode the elements of an array in batches, on the executor or on a
+	 * new pool
+	 * @param count the amount of elements
+	 * @param elements creates the tasks for the batches
+	 * @return the elements, in the order of the array
+	 * @throws IOException if the thread was interrupted
+	 */
+	private List<T> decodeElements(int count, Elements elements) throws IOException {
+		List<T> list = new ArrayList<T>(Collections.<T>nCopies(count, null));
+		if(count == 0) return list;
+		// A few batches per thread, so that threads that finish early can
+		// take over work
+		int batches = Math.min(count, threads * 4);
+		List<Future<?>> pending = new ArrayList<Future<?>>(batches);
+		ExecutorService pool = executor != null ? executor : new ForkJoinPool(threads);
+		try {
+			for(int batch = 0; batch < batches; batch++) {
+				int from = (int) ((long) count * batch / batches);
+				int to = (int) ((long) count * (batch + 1) / batches);
+				pending.add(pool.submit(elements.batch(list, from, to)));
+			}
+			for(Future<?> future : pending)
+				get(future);
+		} finally {
+			for(Future<?> future : pending)
+				future.cancel(true);
+			if(pool != executor) pool.shutdownNow();
+		}
+		return list;
+	}
+	
+	/**
+	 * Find the elements of a top-level array without decoding them. Only
+	 * quotes, escapes and the nesting of objects and arrays are tracked, the
+	 * elements themselves are validated when they are decoded.
+	 * @param b the input
+	 * @param off the offset of the document
+	 * @param len the length of the document
+	 * @return the start and end offset of every element
+	 * @throws JSONException if the input is not an array
+	 */
+	static int[] scanArray(byte[] b, int off, int len) throws JSONException {
+		int end = off + len;
+		int p = off;
+		// Skip the byte order mark
+		if(len >= 3 && b[p] == (byte) 0xEF && b[p + 1] == (byte) 0xBB && b[p + 2] == (byte) 0xBF)
+			p += 3;
+		p = skipWhitespace(b, p, end);
+		if(p == end || b[p] != '[')
+			throw new JSONException("Expected an array");
+		int[] bounds = new int[64];
+		int count = 0;
+		int depth = 0;
+		int start = ++p;
+		for(; p < end; p++) {
+			switch(b[p]) {
+			case '"':
+			case '\'':
+				p = skipString(b, p, end);
+				break;
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+				if(depth-- == 0)
+					throw new JSONException("Unexpected '}'");
+				break;
+			case ']':
+				if(depth-- > 0) break;
+				// The end of the array, which is empty if it has no elements
+				if(count > 0 || skipWhitespace(b, start, p) < p) {
+					if(count == bounds.length) bounds = Arrays.copyOf(bounds, grow(count));
+					bounds[count++] = start;
+					bounds[count++] = p;
+				}
+				if(skipWhitespace(b, p + 1, end) < end)
+					throw new JSONException("Unexpected input after end of document");
+				return Arrays.copyOf(bounds, count);
+			case ',':
+				if(depth > 0) break;
+				if(count == bounds.length) bounds = Arrays.copyOf(bounds, grow(count));
+				bounds[count++] = start;
+				bounds[count++] = p;
+				start = p + 1;
+				break;
+			default:
+				break;
+			}
+		}
+		throw new JSONException("Unexpected end of input");
+	}
+	
+	/**
+	 * Find the elements of a top-level array in a file, which is mapped in
+	 * windows. Strings and escapes can continue in the next window.
+	 * @param channel the file
+	 * @param windowSize the size of the windows
+	 * @return the start and end offset of every element
+	 * @throws JSONException if the input is not an array
+	 * @throws IOException
+	 */
+	static long[] scanArray(FileChannel channel, long windowSize) throws JSONException, IOException {
+		long size = channel.size();
+		long position = 0;
+		// Skip the byte order mark
+		ByteBuffer bom = ByteBuffer.allocate(3);
+		while(bom.hasRemaining() && channel.read(bom, bom.position()) != -1);
+		if(bom.position() == 3 && bom.get(0) == (byte) 0xEF && bom.get(1) == (byte) 0xBB && bom.get(2) == (byte) 0xBF)
+			position = 3;
+		long[] bounds = new long[64];
+		int count = 0;
+		int depth = 0;
+		// The start of the element, or -1 before the opening bracket
+		long start = -1;
+		boolean empty = true;
+		boolean end = false;
+		// The quote of the string that is scanned, or 0 outside of strings
+		byte quote = 0;
+		boolean escaped = false;
+		for(; position < size; position += windowSize) {
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+			for(int i = 0, n = window.limit(); i < n; i++) {
+				byte c = window.get(i);
+				if(quote != 0) {
+					if(escaped) escaped = false;
+					else if(c == '\\') escaped = true;
+					else if(c == quote) quote = 0;
+					continue;
+				}
+				if(c == ' ' || c == '\t' || c == '\n' || c == '\r')
+					continue;
+				if(end)
+					throw new JSONException("Unexpected input after end of document");
+				if(start == -1) {
+					if(c != '[')
+						throw new JSONException("Expected an array");
+					start = position + i + 1;
+					continue;
+				}
+				switch(c) {
+				case '"':
+				case '\'':
+					quote = c;
+					empty = false;
+					break;
+				case '{':
+				case '[':
+					depth++;
+					empty = false;
+					break;
+				case '}':
+					if(depth-- == 0)
+						throw new JSONException("Unexpected '}'");
+					break;
+				case ']':
+					if(depth-- > 0) break;
+					// The end of the array, which is empty if it has no elements
+					if(count > 0 || !empty) {
+						if(count == bounds.length) bounds = grow(bounds);
+						bounds[count++] = start;
+						bounds[count++] = position + i;
+					}
+					end = true;
+					break;
+				case ',':
+					if(depth > 0) break;
+					if(count == bounds.length) bounds = grow(bounds);
+					bounds[count++] = start;
+					bounds[count++] = position + i;
+					start = position + i + 1;
+					empty = true;
+					break;
+				default:
+					empty = false;
+					break;
+				}
+			}
+		}
+		if(start == -1)
+			throw new JSONException("Expected an array");
+		if(!end)
+			throw new JSONException("Unexpected end of input");
+		return Arrays.copyOf(bounds, count);
+	}
+	
+	/**
+	 * @param length the length of a full array, below {@link #MAX_ARRAY_SIZE}
+	 * @return the length to grow the array to
+	 */
+	private static int grow(int length) {
+		return (int) Math.min(length * 2L, MAX_ARRAY_SIZE);
+	}
+	
+	/**
+	 * @param bounds the full offsets of the elements, which hold a start and
+	 * 	end offset for every element
+	 * @return the offsets in a larger array
+	 * @throws JSONException if the offsets do not fit in an array
+	 */
+	private static long[] grow(long[] bounds) throws JSONException {
+		// An even length, so that both offsets of an element fit
+		int max = MAX_ARRAY_SIZE & ~1;
+		if(bounds.length == max)
+			throw new JSONException("The array has more than " + max / 2 + " elements");
+		return Arrays.copyOf(bounds, (int) Math.min(bounds.length * 2L, max));
+	}
+	
+	/**
+	 * @param b the input
+	 * @param p the offset of the opening quote
+	 * @param end the end of the input
+	 * @return the offset of the closing quote
+	 * @throws JSONException at the end of the input
+	 */
+	private static int skipString(byte[] b, int p, int end) throws JSONException {
+		byte quote = b[p];
+		while(++p < end) {
+			byte c = b[p];
+			if(c == quote) return p;
+			if(c == '\\') p++;
+		}
+		throw new JSONException("Unexpected end of input");
+	}
+	
+	/**
+	 * @return the offset of the first character that is not a space
+	 */
+	private static int skipWhitespace(byte[] b, int p, int end) {
+		while(p < end && (b[p] == ' ' || b[p] == '\t' || b[p] == '\n' || b[p] == '\r'))
+			p++;
+		return p;
+	}
+	
+	/**
+	 * Decode the chunks in parallel, and hand the records of every chunk to
+	 * the handler once the chunks before it are handled
+	 */
+	private void decodeOrdered(Chunks chunks, ExecutorService pool, Handler<? super T> handler) throws IOException {
+		Queue<Future<List<T>>> pending = new ArrayDeque<Future<List<T>>>();
+		try {
+			while(chunks.next()) {
+				if(pending.size() == threads * 2) {
+					for(T record : get(pending.remove()))
+						handler.handle(record);
+				}
+				pending.add(pool.submit(new Chunk(chunks.bytes, chunks.length, null)));
+			}
+			while(!pending.isEmpty()) {
+				for(T record : get(pending.remove()))
+					handler.handle(record);
+			}
+		} finally {
+			for(Future<?> future : pending)
+				future.cancel(true);
+		}
+	}
+	
+	/**
+	 * Decode the chunks in parallel, and let the decoding threads hand the
+	 * records to the handler
+	 */
+	private void decodeUnordered(Chunks chunks, ExecutorService pool, Handler<? super T> handler) throws IOException {
+		CompletionService<List<T>> completion = new ExecutorCompletionService<List<T>>(pool);
+		Set<Future<List<T>>> pending = new HashSet<Future<List<T>>>();
+		try {
+			while(chunks.next()) {
+				if(pending.size() == threads * 2)
+					pending.remove(take(completion));
+				pending.add(completion.submit(new Chunk(chunks.bytes, chunks.length, handler)));
+			}
+			while(!pending.isEmpty())
+				pending.remove(take(completion));
+		} finally {
+			for(Future<?> future : pending)
+				future.cancel(true);
+		}
+	}
+	
+	/**
+	 * Wait for the next decoded chunk, and rethrow the exception if it
+	 * could not be decoded
+	 * @param completion the completion service
+	 * @return the future of the chunk
+	 * @throws IOException if the thread was interrupted
+	 */
+	private static <V> Future<V> take(CompletionService<V> completion) throws IOException {
+		Future<V> future;
+		try {
+			future = completion.take();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		get(future);
+		return future;
+	}
+	
+	/**
+	 * Wait for a decoded chunk
+	 * @param future the future of the chunk
+	 * @return the records of the chunk
+	 * @throws IOException if the thread was interrupted
+	 */
+	private static <V> V get(Future<V> future) throws IOException {
+		try {
+			return future.get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof Error) throw (Error) cause;
+			throw new JSONException(cause);
+		}
+	}
+	
+	/**
+	 * Decodes the records of one chunk
+	 */
+	private final class Chunk implements Callable<List<T>> {
+		
+		private final byte[] bytes;
+		private final int length;
+		private final Handler<? super T> handler;
+		
+		/**
+		 * @param bytes the chunk
+		 * @param length the length of the chunk
+		 * @param handler the handler for the records, or {@code null} to
+		 * 	return them
+		 */
+		Chunk(byte[] bytes, int length, Handler<? super T> handler) {
+			this.bytes = bytes;
+			this.length = length;
+			this.handler = handler;
+		}
+		
+		@Override
+		public List<T> call() throws JSONException {
+			JSONIterator<T> records = Decoder.lines(recordType, bytes, 0, length);
+			if(handler != null) {
+				while(records.hasNext())
+					handler.handle(records.next());
+				return null;
+			}
+			List<T> list = new ArrayList<T>();
+			while(records.hasNext())
+				list.add(records.next());
+			return list;
+		}
+		
+	}
+	
+	/**
+	 * Splits an input into chunks that end at a line break. Every chunk is
+	 * read into a new array, so that it can be decoded while the next chunk
+	 * is read.
+	 */
+	private static final class Chunks {
+		
+		private final InputStream io;
+		private final int size;
+		private boolean eof = false;
+		
+		/**
+		 * The start of a line that did not fit in the previous chunk
+		 */
+		private byte[] rest = new byte[0];
+		private int restLength = 0;
+		
+		/**
+		 * The current chunk
+		 */
+		byte[] bytes;
+		int length;
+		
+		Chunks(InputStream io, int size) {
+			this.io = io;
+			this.size = size;
+		}
+		
+		/**
+		 * Read the next chunk
+		 * @return false at the end of the input
+		 * @throws IOException
+		 */
+		boolean next() throws IOException {
+			if(eof) return false;
+			byte[] b = new byte[Math.max(size, grow(restLength))];
+			System.arraycopy(rest, 0, b, 0, restLength);
+			int len = restLength;
+			// The rest of the previous chunk does not contain a line break
+			int scanned = restLength;
+			restLength = 0;
+			while(true) {
+				while(!eof && len < b.length) {
+					int n = io.read(b, len, b.length - len);
+					if(n == -1) eof = true;
+					else len += n;
+				}
+				if(eof) {
+					bytes = b;
+					length = len;
+					return len > 0;
+				}
+				int end = len;
+				while(end > scanned && b[end - 1] != '\n')
+					end--;
+				if(end > scanned) {
+					restLength = len - end;
+					if(rest.length < restLength)
+						rest = new byte[Math.max(restLength, size)];
+					System.arraycopy(b, end, rest, 0, restLength);
+					bytes = b;
+					length = end;
+					return true;
+				}
+				// The line is longer than the chunk
+				if(len == MAX_ARRAY_SIZE)
+					throw new IOException("A line is longer than " + MAX_ARRAY_SIZE + " bytes");
+				scanned = len;
+				b = Arrays.copyOf(b, grow(len));
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,188 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@code StringCache} returns the same {@code String} instance for strings
+ * that are decoded repeatedly, such as status codes, tags and map keys. It
+ * can be shared by any amount of {@link JSONReader}s and threads, and is
+ * used by the {@link Decoder} after {@link Decoder#setStringCache}.
+ * <p>
+ * The cache is bounded: every string maps to a single entry, which is
+ * replaced when another string maps to the same entry. Only strings up to a
+ * maximum length in UTF-8 bytes are cached. The amount of hits and misses
+ * can be used to tune the capacity and maximum length.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class StringCache {
+	
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	private final static Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	/**
+	 * The counters are striped over this many slots, so threads do not
+	 * contend on a single counter
+	 */
+	private final static int STRIPES = 16;
+	
+	/**
+	 * Distance between counters in the array, so that the counters of
+	 * different stripes are on different cache lines
+	 */
+	private final static int SPACING = 16;
+	
+	/**
+	 * The entries of the cache. They are read and replaced without locking:
+	 * entries are immutable, so a thread sees either an old or a new entry,
+	 * which both hold a valid string.
+	 */
+	private final Entry[] entries;
+	private final int mask;
+	private final int maxLength;
+	
+	/**
+	 * The hits of every stripe, followed by the misses
+	 */
+	private final AtomicLongArray counters = new AtomicLongArray(2 * STRIPES * SPACING);
+	
+	/**
+	 * Construct a new {@code StringCache} with 4096 entries, for strings of
+	 * up to 32 bytes
+	 */
+	public StringCache() {
+		this(4096, 32);
+	}
+	
+	/**
+	 * Construct a new {@code StringCache}
+	 * @param capacity the amount of entries, rounded up to a power of two
+	 * @param maxLength the maximum length of cached strings in UTF-8 bytes
+	 */
+	public StringCache(int capacity, int maxLength) {
+		if(capacity <= 0 || maxLength < 0)
+			throw new IllegalArgumentException("Capacity should be positive and maximum length not negative");
+		int size = 1;
+		while(size < capacity && size < 1 << 30) size <<= 1;
+		this.entries = new Entry[size];
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+	
+	/**
+	 * @return the amount of strings that were found in the cache
+	 */
+	public long hits() {
+		return sum(0);
+	}
+	
+	/**
+	 * @return the amount of strings that were not found in the cache, and
+	 *         were decoded
+	 */
+	public long misses() {
+		return sum(STRIPES);
+	}
+	
+	/**
+	 * Remove all strings from the cache, and reset the counters
+	 */
+	public void clear() {
+		for(int i = 0; i < entries.length; i++) entries[i] = null;
+		for(int i = 0; i < counters.length(); i++) counters.set(i, 0);
+	}
+	
+	/**
+	 * @param len the length of a string in bytes
+	 * @return true if strings of this length are cached
+	 */
+	boolean accepts(int len) {
+		return len <= maxLength;
+	}
+	
+	/**
+	 * Get the string for UTF-8 bytes. If it is not in the cache, it is
+	 * decoded and put in the cache.
+	 * @param b the bytes
+	 * @param off the offset of the string
+	 * @param len the length of the string, at most the maximum length
+	 * @return the string
+	 */
+	String get(byte[] b, int off, int len) {
+		int h = 0;
+		boolean ascii = true;
+		for(int i = off, l = off + len; i < l; i++) {
+			h = 31 * h + b[i];
+			ascii &= b[i] >= 0;
+		}
+		int index = (h ^ (h >>> 16)) & mask;
+		Entry entry = entries[index];
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		if(entry != null && entry.hash == h && entry.matches(b, off, len)) {
+			counters.getAndIncrement(stripe * SPACING);
+			return entry.value;
+		}
+		counters.getAndIncrement((STRIPES + stripe) * SPACING);
+		String value = new String(b, off, len, ascii ? ISO_8859_1 : UTF_8);
+		entries[index] = new Entry(h, b, off, len, value);
+		return value;
+	}
+	
+	private long sum(int first) {
+		long sum = 0;
+		for(int i = first; i < first + STRIPES; i++)
+			sum += counters.get(i * SPACING);
+		return sum;
+	}
+	
+	/**
+	 * A string with its UTF-8 bytes
+	 */
+	private static final class Entry {
+		
+		final int hash;
+		final byte[] bytes;
+		final String value;
+		
+		Entry(int hash, byte[] b, int off, int len, String value) {
+			this.hash = hash;
+			this.bytes = new byte[len];
+			System.arraycopy(b, off, bytes, 0, len);
+			this.value = value;
+		}
+		
+		boolean matches(byte[] b, int off, int len) {
+			if(bytes.length != len) return false;
+			for(int i = 0; i < len; i++) {
+				if(bytes[i] != b[off + i]) return false;
+			}
+			return true;
+		}
+	}
+	
+}
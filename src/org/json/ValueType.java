@@ -0,0 +1,231 @@
+package org.json;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@code ValueType} describes how values of a declared Java type are
+ * converted from and to JSON. The type is resolved only once, so the
+ * {@link Decoder} and {@link Encoder} can dispatch on its {@link Kind}
+ * instead of testing the class against every supported type for every value.
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+final class ValueType {
+	
+	/**
+	 * The kinds of values that can be (de)serialized
+	 */
+	enum Kind {
+		STRING, BOOLEAN, BYTE, SHORT, INTEGER, LONG, FLOAT, DOUBLE, NUMBER,
+		OBJECT, COLLECTION, MAP, UNSUPPORTED
+	}
+	
+	/**
+	 * Types resolved for raw classes. A {@code ClassValue} is used so the cached
+	 * types do not prevent classes from being unloaded.
+	 */
+	private static final ClassValue<ValueType> RAW_TYPES = new ClassValue<ValueType>() {
+		@Override
+		protected ValueType computeValue(Class<?> type) {
+			return new ValueType(type, type);
+		}
+	};
+	
+	final Kind kind;
+	final Class<?> rawType;
+	final boolean primitive;
+	
+	/**
+	 * The type of the elements in a {@code Collection}, or the values in a
+	 * {@code Map}. Can be {@code null} if the type arguments are unknown.
+	 */
+	final ValueType elementType;
+	
+	/**
+	 * Constructor used to instantiate a {@code Collection} or {@code Map}
+	 */
+	private final Constructor<?> constructor;
+	
+	/**
+	 * Construct a new ValueType
+	 * @param klass the raw class
+	 * @param type the generic type
+	 */
+	private ValueType(Class<?> klass, Type type) {
+		this.rawType = klass;
+		this.primitive = klass.isPrimitive();
+		this.kind = kindOf(klass);
+		switch(kind) {
+		case COLLECTION:
+			this.elementType = typeArgument(type, 0);
+			this.constructor = constructorOf(klass, ArrayList.class, HashSet.class, TreeSet.class);
+			break;
+		case MAP:
+			this.elementType = typeArgument(type, 1);
+			this.constructor = constructorOf(klass, HashMap.class, TreeMap.class);
+			break;
+		default:
+			this.elementType = null;
+			this.constructor = null;
+		}
+	}
+	
+	/**
+	 * @param klass the raw class
+	 * @return the {@code ValueType} for a raw class
+	 */
+	static ValueType of(Class<?> klass) {
+		return RAW_TYPES.get(klass);
+	}
+	
+	/**
+	 * @param klass the raw class
+	 * @param type the generic type, for example a field's generic type
+	 * @return the {@code ValueType} for a generic type
+	 */
+	static ValueType of(Class<?> klass, Type type) {
+		if(type instanceof ParameterizedType)
+			return new ValueType(klass, type);
+		return of(klass);
+	}
+	
+	/**
+	 * @return the {@code ClassBinding} for a {@link Kind#OBJECT} type
+	 */
+	ClassBinding<?> binding() {
+		return ClassBinding.of(rawType);
+	}
+	
+	/**
+	 * Instantiate a new, empty, {@code Collection} or {@code Map} for this type
+	 * @return the new instance
+	 * @throws JSONException if the type cannot be instantiated
+	 */
+	Object newInstance() throws JSONException {
+		if(constructor == null)
+			throw new JSONException(rawType.getCanonicalName() + " could not be instantiated");
+		try {
+			return constructor.newInstance();
+		} catch ( Exception e ) {
+			throw new JSONException(e);
+		}
+	}
+	
+	private static Kind kindOf(Class<?> klass) {
+		if(klass.equals(String.class)) {
+			return Kind.STRING;
+		} else if (klass.equals(Boolean.class) || klass.equals(boolean.class)) {
+			return Kind.BOOLEAN;
+		} else if (klass.equals(Byte.class) || klass.equals(byte.class)) {
+			return Kind.BYTE;
+		} else if (klass.equals(Short.class) || klass.equals(short.class)) {
+			return Kind.SHORT;
+		} else if (klass.equals(Integer.class) || klass.equals(int.class)) {
+			return Kind.INTEGER;
+		} else if (klass.equals(Long.class) || klass.equals(long.class)) {
+			return Kind.LONG;
+		} else if (klass.equals(Float.class) || klass.equals(float.class)) {
+			return Kind.FLOAT;
+		} else if (klass.equals(Double.class) || klass.equals(double.class)) {
+			return Kind.DOUBLE;
+		} else if (JSONSerializable.class.isAssignableFrom(klass)) {
+			return Kind.OBJECT;
+		} else if (Collection.class.isAssignableFrom(klass)) {
+			return Kind.COLLECTION;
+		} else if (Map.class.isAssignableFrom(klass)) {
+			return Kind.MAP;
+		} else if (Number.class.isAssignableFrom(klass)) {
+			return Kind.NUMBER;
+		}
+		return Kind.UNSUPPORTED;
+	}
+	
+	/**
+	 * Resolve a type argument of a parameterized type
+	 * @param type the generic type
+	 * @param index index of the type argument
+	 * @return the resolved type argument, or {@code null} if unknown
+	 */
+	private static ValueType typeArgument(Type type, int index) {
+		if(!(type instanceof ParameterizedType))
+			return null;
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		if(index >= arguments.length)
+			return null;
+		Type argument = arguments[index];
+		if(argument instanceof WildcardType)
+			argument = ((WildcardType) argument).getUpperBounds()[0];
+		if(argument instanceof Class)
+			return of((Class<?>) argument);
+		if(argument instanceof ParameterizedType)
+			return of((Class<?>) ((ParameterizedType) argument).getRawType(), argument);
+		return null;
+	}
+	
+	/**
+	 * Find the constructor to instantiate a {@code Collection} or {@code Map}.
+	 * Interfaces and abstract classes are instantiated with the first of the
+	 * given implementations that is assignable to the type.
+	 * @param klass the type
+	 * @param implementations default implementations
+	 * @return the no-arg constructor, or {@code null} if there is none
+	 */
+	private static Constructor<?> constructorOf(Class<?> klass, Class<?>... implementations) {
+		Class<?> implementation = null;
+		if(klass.isInterface() || Modifier.isAbstract(klass.getModifiers())) {
+			for(Class<?> candidate : implementations) {
+				if(klass.isAssignableFrom(candidate)) {
+					implementation = candidate;
+					break;
+				}
+			}
+		} else {
+			implementation = klass;
+		}
+		if(implementation == null)
+			return null;
+		try {
+			Constructor<?> constructor = implementation.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor;
+		} catch ( Exception e ) {
+			return null;
+		}
+	}
+	
+}
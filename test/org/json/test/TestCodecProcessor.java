@@ -0,0 +1,100 @@
+package org.json.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.json.Decoder;
+import org.json.Encoder;
+import org.json.JSONSerializable;
+import org.junit.Test;
+
+public class TestCodecProcessor {
+
+	/**
+	 * This case tests if a codec from an earlier build is generated again
+	 * when its class has changed, so the new attribute is decoded and
+	 * encoded
+	 */
+	@Test public final void testRecompileChangedClass() throws Exception {
+		Path dir = Files.createTempDirectory("codecs");
+		File source = dir.resolve("Item.java").toFile();
+		File classes = dir.resolve("classes").toFile();
+		assertTrue(classes.mkdir());
+		try {
+			write(source, "@org.json.JSONAttribute public String a;");
+			assertTrue(compile(source, classes));
+			write(source, "@org.json.JSONAttribute public String a; @org.json.JSONAttribute public String b;");
+			// The codec of the earlier build is on the class path
+			assertTrue(compile(source, classes));
+
+			URLClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader());
+			try {
+				assertNotNull(loader.loadClass("example.Item_JSONCodec"));
+				Class<? extends JSONSerializable> type = loader.loadClass("example.Item").asSubclass(JSONSerializable.class);
+				JSONSerializable item = Decoder.decode(type, "{\"a\":\"x\",\"b\":\"y\"}");
+				assertEquals("y", type.getField("b").get(item));
+				assertEquals("{\"a\":\"x\",\"b\":\"y\"}", Encoder.encode(item));
+			} finally {
+				loader.close();
+			}
+		} finally {
+			delete(dir.toFile());
+		}
+	}
+
+	/**
+	 * A codec from an earlier build should not silently remain in use when
+	 * no codec can be generated for the changed class
+	 */
+	@Test public final void testRecompileUnsupportedClass() throws Exception {
+		Path dir = Files.createTempDirectory("codecs");
+		File source = dir.resolve("Item.java").toFile();
+		File classes = dir.resolve("classes").toFile();
+		assertTrue(classes.mkdir());
+		try {
+			write(source, "@org.json.JSONAttribute public String a;");
+			assertTrue(compile(source, classes));
+			write(source, "@org.json.JSONAttribute public String a; @org.json.JSONAttribute private String b;");
+			assertFalse(compile(source, classes));
+		} finally {
+			delete(dir.toFile());
+		}
+	}
+
+	private static void write(File source, String attributes) throws IOException {
+		String code = "package example; public class Item implements org.json.JSONSerializable { " + attributes + " }";
+		Files.write(source.toPath(), code.getBytes("UTF-8"));
+	}
+
+	/**
+	 * Compile a source file with the processor, which is registered as
+	 * service on the class path of the tests
+	 * @return true if the source was compiled
+	 */
+	private static boolean compile(File source, File classes) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		String classPath = classes.getPath() + File.pathSeparator + System.getProperty("java.class.path");
+		// Errors are expected for some sources, and are not printed
+		return compiler.run(null, null, new ByteArrayOutputStream(), "-d", classes.getPath(), "-classpath", classPath, source.getPath()) == 0;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if(files != null) {
+			for(File f : files) delete(f);
+		}
+		file.delete();
+	}
+}
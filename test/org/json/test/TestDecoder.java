@@ -1,13 +1,27 @@
 package org.json.test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import org.json.Decoder;
+import org.json.Encoder;
 import org.json.JSONException;
+import org.json.JSONIterator;
+import org.json.JSONReader;
+import org.json.StringCache;
 import org.json.test.TestWrappers.ObjectWithArray;
 import org.json.test.TestWrappers.*;
 import org.junit.Test;
@@ -320,4 +334,279 @@ public class TestDecoder {
 		
 		assertEquals(expected, result);
 	}
+
+	/**
+	 * This case tests if attributes are set through annotated setters, and if
+	 * attributes that only have a getter are ignored
+	 */
+	@Test public final void testAccessors() {
+		String input = "{ name : \"test\", count : 12345678901, active : true, nickname : \"t\", length : 3 }";
+		ObjectWithAccessors result = Decoder.decode(ObjectWithAccessors.class, input);
+		assertEquals("test", result.getName());
+		assertEquals(12345678901L, result.getCount());
+		assertTrue(result.isActive());
+		assertEquals("t", result.getAlias());
+	}
+	
+	/**
+	 * Required setters should throw an exception when the attribute is absent
+	 */
+	@Test(expected=JSONException.class) public final void testRequiredAccessor() {
+		Decoder.decode(ObjectWithAccessors.class, "{ name : \"test\" }");
+	}
+
+	/**
+	 * This case tests if objects decoded and encoded through codecs
+	 * generated at runtime are equal to those decoded and encoded through
+	 * reflection, also for classes that fall back to reflection
+	 */
+	@SuppressWarnings("rawtypes")
+	@Test public final void testGeneratedCodecs() {
+		String input = "{ name : \"t\\\"e\", count : -5, id : 12345678901, weight : 1.5, ratio : 2.5e3, active : true, inner : {\"value\" : \"x\", value1 : 3}, alias : \"a\", unknown : [1,{}] }";
+		String nulls = "{ name : null, inner : null, alias : null }";
+		String access = "{ publicMember : \"a\", privateMember : \"b\" }";
+		String expected = Encoder.encode(Decoder.decode(GenericObject.class, input));
+		String expectedNulls = Encoder.encode(Decoder.decode(GenericObject.class, nulls));
+		TestPrivateAccess expectedAccess = Decoder.decode(TestPrivateAccess.class, access);
+		try {
+			Decoder.setGeneratedCodecs(true);
+			Encoder.setGeneratedCodecs(true);
+			assertEquals(expected, Encoder.encode(Decoder.decode(GenericObject.class, input)));
+			assertEquals(expectedNulls, Encoder.encode(Decoder.decode(GenericObject.class, nulls)));
+			// No codec can be generated for classes with private attributes
+			TestPrivateAccess resultAccess = Decoder.decode(TestPrivateAccess.class, access);
+			assertEquals(expectedAccess, resultAccess);
+			assertEquals(Encoder.encode(expectedAccess), Encoder.encode(resultAccess));
+		} finally {
+			Decoder.setGeneratedCodecs(false);
+			Encoder.setGeneratedCodecs(false);
+		}
+	}
+	
+	/**
+	 * Test that a class is decoded and encoded through a codec generated at
+	 * runtime when it is enabled, and through reflection otherwise
+	 */
+	@SuppressWarnings("rawtypes")
+	@Test public final void testGeneratedCodecIsUsed() {
+		String codec = GenericObject.class.getName() + "$$JSONCodec";
+		String input = "{ name : \"x\", alias : \"a\" }";
+		GenericObject reflected = Decoder.decode(GenericObject.class, input);
+		Encoder.encode(reflected);
+		assertFalse(codec.equals(reflected.setterCaller));
+		assertFalse(codec.equals(reflected.getterCaller));
+		try {
+			Decoder.setGeneratedCodecs(true);
+			Encoder.setGeneratedCodecs(true);
+			GenericObject generated = Decoder.decode(GenericObject.class, input);
+			assertEquals(codec, generated.setterCaller);
+			Encoder.encode(generated);
+			assertEquals(codec, generated.getterCaller);
+		} finally {
+			Decoder.setGeneratedCodecs(false);
+			Encoder.setGeneratedCodecs(false);
+		}
+	}
+	
+	/**
+	 * Test that a class is decoded and encoded through its {@code JSONCodec}
+	 * when there is one
+	 */
+	@Test public final void testCodec() {
+		ObjectWithCodec result = Decoder.decode(ObjectWithCodec.class, "{ value : \"test\", other : [1, 2] }");
+		assertEquals("test", result.value);
+		assertEquals("{\"value\":\"TEST\"}", Encoder.encode(result));
+	}
+	
+	/**
+	 * Test that attribute names are matched when they are quoted, unquoted,
+	 * or span multiple blocks of the input, and that unknown names that
+	 * resemble known names are skipped
+	 */
+	@Test public final void testNames() throws UnsupportedEncodingException {
+		String input = "{ \"valu\" : 1, \"value\" : \"test\", value1 : 2342342, 'value2' : 23.2342352353, \"value3\" : true, \"val\u00fce\" : 2, \"value33\" : false }";
+		PlainObjectWrapper expected = new PlainObjectWrapper();
+		expected.value = "test";
+		expected.value1 = 2342342;
+		expected.value2 = 23.2342352353;
+		expected.value3 = true;
+		byte[] bytes = input.getBytes("UTF-8");
+		try {
+			// Buffers are at least 16 bytes
+			for(int size = 16; size <= bytes.length + 1; size++) {
+				Decoder.setBufferSize(size);
+				assertEquals(expected, Decoder.decode(PlainObjectWrapper.class, new ByteArrayInputStream(bytes)));
+			}
+		} finally {
+			Decoder.setBufferSize(JSONReader.DEFAULT_BUFFER_SIZE);
+		}
+	}
+	
+	/**
+	 * Test that attributes are bound in any order, also when the expected
+	 * attribute name is a prefix of the actual name
+	 */
+	@Test public final void testAttributeOrder() {
+		PlainObjectWrapper expected = new PlainObjectWrapper();
+		expected.value = "test";
+		expected.value1 = 2342342;
+		expected.value2 = 23.2342352353;
+		expected.value3 = true;
+		assertEquals(expected, Decoder.decode(PlainObjectWrapper.class, Encoder.encode(expected)));
+		String reversed = "{\"value3\":true,\"value2\":23.2342352353,\"value1\":2342342,\"value\":\"test\"}";
+		assertEquals(expected, Decoder.decode(PlainObjectWrapper.class, reversed));
+		String skipped = "{\"value1\":2342342,\"value\":\"test\",\"value3\":true,\"value2\":23.2342352353}";
+		assertEquals(expected, Decoder.decode(PlainObjectWrapper.class, skipped));
+	}
+	
+	/**
+	 * Test that repeated keys and values share their instance when a string
+	 * cache is used, and that long strings are not cached
+	 */
+	@Test public final void testStringCache() {
+		String input = "{ myMap : { \"status\" : \"OK\", \"long\" : \"a value that is too long to be cached\" } }";
+		StringCache cache = new StringCache(64, 16);
+		try {
+			Decoder.setStringCache(cache);
+			ObjectWithMap first = Decoder.decode(ObjectWithMap.class, input);
+			ObjectWithMap second = Decoder.decode(ObjectWithMap.class, input);
+			assertEquals(first, second);
+			assertSame(first.myMap.get("status"), second.myMap.get("status"));
+			assertNotSame(first.myMap.get("long"), second.myMap.get("long"));
+			String key = second.myMap.keySet().iterator().next();
+			for (String k : first.myMap.keySet()) {
+				if (k.equals(key)) assertSame(k, key);
+			}
+			assertEquals(3, cache.misses());
+			assertEquals(3, cache.hits());
+		} finally {
+			Decoder.setStringCache(null);
+		}
+	}
+	
+	/**
+	 * Test that the elements of an array are decoded one at a time, while
+	 * the input is generated
+	 */
+	@Test public final void testIterator() throws IOException {
+		final int count = 100000;
+		InputStream input = new InputStream() {
+			private final byte[] element = "{\"value\":\"test\",\"value1\":1},".getBytes("UTF-8");
+			private int n = -1, p = 0;
+			@Override
+			public int read() {
+				if(n == -1) {
+					n = 0;
+					return '[';
+				}
+				if(n == count) return -1;
+				if(n == count - 1 && p == element.length - 1) {
+					n++;
+					return ']';
+				}
+				byte b = element[p++];
+				if(p == element.length) {
+					p = 0;
+					n++;
+				}
+				return b;
+			}
+		};
+		JSONIterator<PlainObjectWrapper> iterator = Decoder.iterator(PlainObjectWrapper.class, input);
+		try {
+			int n = 0;
+			while(iterator.hasNext()) {
+				PlainObjectWrapper object = iterator.next();
+				assertEquals("test", object.value);
+				n++;
+			}
+			assertEquals(count, n);
+			assertFalse(iterator.hasNext());
+		} finally {
+			iterator.close();
+		}
+	}
+	
+	/**
+	 * Test that an array is decoded into a list
+	 */
+	@Test public final void testDecodeList() {
+		List<PlainObjectWrapper> list = Decoder.decodeList(PlainObjectWrapper.class, "[ { value : \"a\" }, null, { value : \"b\" } ]");
+		assertEquals(3, list.size());
+		assertEquals("a", list.get(0).value);
+		assertEquals(null, list.get(1));
+		assertEquals("b", list.get(2).value);
+		assertTrue(Decoder.decodeList(PlainObjectWrapper.class, "[]").isEmpty());
+	}
+	
+	/**
+	 * Test that the records of a JSON Lines input are decoded one at a time,
+	 * and that blank lines between records are ignored
+	 */
+	@Test public final void testLines() throws IOException {
+		String input = "{\"value\":\"a\",\"value1\":1}\n{\"value\":\"b\",\"value1\":2}\r\n\nnull\n";
+		JSONIterator<PlainObjectWrapper> iterator = Decoder.lines(PlainObjectWrapper.class, new ByteArrayInputStream(input.getBytes("UTF-8")));
+		try {
+			assertEquals("a", iterator.next().value);
+			assertEquals(2, iterator.next().value1);
+			assertEquals(null, iterator.next());
+			assertFalse(iterator.hasNext());
+		} finally {
+			iterator.close();
+		}
+		assertFalse(Decoder.lines(PlainObjectWrapper.class, "").hasNext());
+	}
+	
+	/**
+	 * Test that a malformed record in a JSON Lines input is reported
+	 */
+	@Test(expected=JSONException.class) public final void testLinesMalformed() {
+		JSONIterator<PlainObjectWrapper> iterator = Decoder.lines(PlainObjectWrapper.class, "{\"value\":\"a\"}\n{\"value\":}\n");
+		iterator.next();
+		iterator.next();
+	}
+	
+	/**
+	 * Test that documents, arrays and JSON Lines are decoded from a memory
+	 * mapped file
+	 */
+	@Test public final void testPath() throws IOException {
+		Path path = Files.createTempFile("test", ".json");
+		try {
+			Files.write(path, "{ value : \"test\", value1 : 2 }".getBytes("UTF-8"));
+			PlainObjectWrapper object = Decoder.decode(PlainObjectWrapper.class, path);
+			assertEquals("test", object.value);
+			assertEquals(2, object.value1);
+			
+			Files.write(path, "[ { value : \"a\" }, { value : \"b\" } ]".getBytes("UTF-8"));
+			JSONIterator<PlainObjectWrapper> iterator = Decoder.iterator(PlainObjectWrapper.class, path);
+			try {
+				assertEquals("a", iterator.next().value);
+				assertEquals("b", iterator.next().value);
+				assertFalse(iterator.hasNext());
+			} finally {
+				iterator.close();
+			}
+			
+			Files.write(path, "{\"value\":\"a\"}\n{\"value\":\"b\"}\n".getBytes("UTF-8"));
+			iterator = Decoder.lines(PlainObjectWrapper.class, path);
+			try {
+				assertEquals("a", iterator.next().value);
+				assertEquals("b", iterator.next().value);
+				assertFalse(iterator.hasNext());
+			} finally {
+				iterator.close();
+			}
+			
+			Files.write(path, new byte[0]);
+			try {
+				Decoder.iterator(PlainObjectWrapper.class, path);
+				fail();
+			} catch ( JSONException e ) {
+				// Expected
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
 }
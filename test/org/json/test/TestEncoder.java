@@ -1,14 +1,19 @@
 package org.json.test;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.json.Decoder;
 import org.json.Encoder;
+import org.json.JSONIterator;
 import org.json.test.TestWrappers.ComplexObject;
 import org.json.test.TestWrappers.EmptyObjectWrapper;
 import org.json.test.TestWrappers.FinalFields;
+import org.json.test.TestWrappers.ObjectWithAccessors;
 import org.json.test.TestWrappers.ObjectWithArray;
 import org.json.test.TestWrappers.ObjectWithComplexArray;
 import org.json.test.TestWrappers.ObjectWithComplexMap;
@@ -170,4 +175,78 @@ public class TestEncoder {
 		
 		assertEquals(Encoder.encode(Decoder.decode(ObjectWithComplexMap.class, Encoder.encode(object))), Encoder.encode(object));
 	}
+
+	/**
+	 * This case tests if attributes are read through annotated getters, and if
+	 * attributes that only have a setter are not written
+	 */
+	@Test public final void testAccessors() {
+		ObjectWithAccessors object = new ObjectWithAccessors();
+		object.setName("test");
+		object.setCount(12345678901L);
+		object.setActive(true);
+		String expected = "{\"active\":true,\"count\":12345678901,\"length\":4,\"name\":\"test\"}";
+		assertEquals(expected, Encoder.encode(object));
+	}
+	
+	/**
+	 * This case tests if attribute names are written with the separator for
+	 * pretty printing when an indentation is set, also for deeply nested
+	 * objects
+	 */
+	@Test public final void testIndent() {
+		ObjectWithAccessors object = new ObjectWithAccessors();
+		object.setName("test");
+		object.setCount(1);
+		ComplexObject complex = new ComplexObject();
+		complex.innerObject = new PlainObjectWrapper();
+		try {
+			Encoder.setIndent(2);
+			String expected = "{\n  \"active\" : false,\n  \"count\" : 1,\n  \"length\" : 4,\n  \"name\" : \"test\"\n}";
+			assertEquals(expected, Encoder.encode(object));
+			Encoder.setIndent(100);
+			String inner = Encoder.encode(complex).split("\n")[4];
+			assertEquals(200, inner.indexOf('"'));
+			assertEquals(complex, Decoder.decode(ComplexObject.class, Encoder.encode(complex)));
+		} finally {
+			Encoder.setIndent(0);
+		}
+	}
+	
+	/**
+	 * Test that objects are written as JSON Lines through one buffer, and
+	 * that the output can be read back record by record
+	 */
+	@Test public final void testEncodeLines() throws IOException {
+		List<PlainObjectWrapper> objects = new ArrayList<PlainObjectWrapper>();
+		for(int i = 0; i < 1000; i++) {
+			PlainObjectWrapper object = new PlainObjectWrapper();
+			object.value = "test" + i;
+			object.value1 = i;
+			objects.add(object);
+		}
+		final int[] writes = { 0 };
+		ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				writes[0]++;
+				super.write(b, off, len);
+			}
+		};
+		try {
+			Encoder.setIndent(2);
+			Encoder.encodeLines(out, objects);
+		} finally {
+			Encoder.setIndent(0);
+		}
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertEquals(1000, lines.length);
+		assertEquals(Encoder.encode(objects.get(0)), lines[0]);
+		assertTrue(writes[0] < 1000);
+		
+		JSONIterator<PlainObjectWrapper> iterator = Decoder.lines(PlainObjectWrapper.class, out.toString("UTF-8"));
+		for(PlainObjectWrapper object : objects)
+			assertEquals(object, iterator.next());
+		assertFalse(iterator.hasNext());
+	}
 }
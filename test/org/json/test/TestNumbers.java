@@ -0,0 +1,131 @@
+package org.json.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.json.JSONReader;
+import org.json.JSONWriter;
+import org.junit.Test;
+
+public class TestNumbers {
+	
+	private final static int COUNT = 200000;
+
+	/**
+	 * This case tests if random doubles are written as the shortest decimal
+	 * that the JDK reads back as the same double, and if the reader parses
+	 * them back to the same double
+	 */
+	@Test public final void testDoubleRoundTrip() throws IOException {
+		Random random = new Random(42);
+		double[] values = new double[COUNT];
+		for(int i = 0; i < COUNT; i++) {
+			do {
+				values[i] = (i % 2 == 0) ? Double.longBitsToDouble(random.nextLong())
+						: random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+			} while(Double.isNaN(values[i]) || Double.isInfinite(values[i]));
+		}
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginArray();
+		for(double value : values) writer.value(value);
+		writer.endArray();
+		writer.close();
+		
+		String[] written = out.toString().substring(1, out.toString().length() - 1).split(",");
+		JSONReader reader = new JSONReader(out.toString());
+		reader.beginArray();
+		for(int i = 0; i < COUNT; i++) {
+			double value = values[i];
+			String expected = Double.toString(value);
+			assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(written[i])));
+			assertEquals(expected, Double.doubleToLongBits(value), Double.doubleToLongBits(reader.nextDouble()));
+			assertTrue(expected, written[i].length() <= expected.length());
+			assertEquals(expected, expected.contains("E"), written[i].contains("E"));
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * This case tests if random floats are written as the shortest decimal
+	 * that the JDK reads back as the same float, and if the reader parses
+	 * them back to the same float
+	 */
+	@Test public final void testFloatRoundTrip() throws IOException {
+		Random random = new Random(42);
+		float[] values = new float[COUNT];
+		for(int i = 0; i < COUNT; i++) {
+			do {
+				values[i] = Float.intBitsToFloat(random.nextInt());
+			} while(Float.isNaN(values[i]) || Float.isInfinite(values[i]));
+		}
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginArray();
+		for(float value : values) writer.value(value);
+		writer.endArray();
+		writer.close();
+		
+		String[] written = out.toString().substring(1, out.toString().length() - 1).split(",");
+		JSONReader reader = new JSONReader(out.toString());
+		reader.beginArray();
+		for(int i = 0; i < COUNT; i++) {
+			float value = values[i];
+			String expected = Float.toString(value);
+			assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(written[i])));
+			assertEquals(expected, Float.floatToIntBits(value), Float.floatToIntBits(reader.nextFloat()));
+			assertTrue(expected, written[i].length() <= expected.length());
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * This case tests if random decimals, including ones with more digits
+	 * than a double can hold and ones close to halfway between two doubles,
+	 * are parsed exactly like the JDK parses them
+	 */
+	@Test public final void testParse() {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder("[");
+		String[] inputs = new String[COUNT];
+		for(int i = 0; i < COUNT; i++) {
+			BigDecimal exact = new BigDecimal(random.nextDouble() * Math.pow(10, random.nextInt(600) - 300));
+			if(random.nextBoolean()) exact = exact.negate();
+			inputs[i] = exact.round(new MathContext(1 + random.nextInt(30))).toString();
+			if(i > 0) sb.append(',');
+			sb.append(inputs[i]);
+		}
+		sb.append(']');
+		JSONReader doubles = new JSONReader(sb.toString());
+		JSONReader floats = new JSONReader(sb.toString());
+		doubles.beginArray();
+		floats.beginArray();
+		for(String input : inputs) {
+			assertEquals(input, Double.doubleToLongBits(Double.parseDouble(input)), Double.doubleToLongBits(doubles.nextDouble()));
+			assertEquals(input, Float.floatToIntBits(Float.parseFloat(input)), Float.floatToIntBits(floats.nextFloat()));
+		}
+		doubles.endArray();
+		floats.endArray();
+	}
+
+	/**
+	 * This case tests if numbers are written in the same layout as
+	 * {@code Double.toString}, and if values are written shorter than
+	 * {@code Double.toString} where possible
+	 */
+	@Test public final void testLayout() throws IOException {
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginArray();
+		writer.value(0.0).value(-0.0).value(100.0).value(9999999.0).value(1.0E7).value(0.001).value(9.999E-4)
+			.value(-2.5E-10).value(Double.MIN_VALUE).value(Double.MAX_VALUE).value(1.0E23).value(1.1f);
+		writer.endArray();
+		writer.close();
+		assertEquals("[0.0,-0.0,100.0,9999999.0,1.0E7,0.001,9.999E-4,-2.5E-10,4.9E-324,1.7976931348623157E308,1.0E23,1.1]", out.toString());
+	}
+}
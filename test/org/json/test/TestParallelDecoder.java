@@ -0,0 +1,231 @@
+package org.json.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.Encoder;
+import org.json.JSONException;
+import org.json.JSONReader;
+import org.json.ParallelDecoder;
+import org.json.test.TestWrappers.PlainObjectWrapper;
+import org.junit.Test;
+
+public class TestParallelDecoder {
+	
+	private static List<PlainObjectWrapper> records(int count) {
+		List<PlainObjectWrapper> records = new ArrayList<PlainObjectWrapper>();
+		for(int i = 0; i < count; i++) {
+			PlainObjectWrapper object = new PlainObjectWrapper();
+			object.value = "test" + i;
+			object.value1 = i;
+			records.add(object);
+		}
+		return records;
+	}
+	
+	private static InputStream lines(List<PlainObjectWrapper> records) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Encoder.encodeLines(out, records);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+	
+	/**
+	 * Test that records are decoded in the order of the input, also when
+	 * the input is split into many small chunks
+	 */
+	@Test public final void testOrdered() throws IOException {
+		List<PlainObjectWrapper> records = records(10000);
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setThreads(4);
+		decoder.setChunkSize(1000);
+		assertEquals(records, decoder.decodeList(lines(records)));
+	}
+	
+	/**
+	 * Test that every record is handed over exactly once when the order is
+	 * not kept
+	 */
+	@Test public final void testUnordered() throws IOException {
+		final int count = 10000;
+		final BitSet seen = new BitSet(count);
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setChunkSize(4096);
+		decoder.setOrdered(false);
+		decoder.decode(lines(records(count)), new ParallelDecoder.Handler<PlainObjectWrapper>() {
+			@Override
+			public void handle(PlainObjectWrapper record) {
+				synchronized(seen) {
+					assertFalse(seen.get(record.value1));
+					seen.set(record.value1);
+				}
+			}
+		});
+		assertEquals(count, seen.cardinality());
+	}
+	
+	/**
+	 * Test that lines longer than the chunk size are not split, and that
+	 * input without a trailing line break is decoded
+	 */
+	@Test public final void testLongLines() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for(int i = 0; i < 1000; i++)
+			value.append("long");
+		String input = "{\"value\":\"a\"}\n{\"value\":\"" + value + "\"}\n\n{\"value\":\"b\"}";
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setChunkSize(16);
+		List<PlainObjectWrapper> result = decoder.decodeList(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		assertEquals(3, result.size());
+		assertEquals("a", result.get(0).value);
+		assertEquals(value.toString(), result.get(1).value);
+		assertEquals("b", result.get(2).value);
+	}
+	
+	/**
+	 * Test that chunks are decoded on a given executor, which is not shut
+	 * down afterwards
+	 */
+	@Test public final void testExecutor() throws IOException {
+		List<PlainObjectWrapper> records = records(1000);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+			decoder.setExecutor(executor);
+			decoder.setChunkSize(1000);
+			assertEquals(records, decoder.decodeList(lines(records)));
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.isShutdown());
+	}
+	
+	/**
+	 * Test that a malformed record in any chunk is reported
+	 */
+	@Test(expected=JSONException.class) public final void testMalformed() throws IOException {
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < 1000; i++)
+			input.append("{\"value\":\"a\"}\n");
+		input.append("{\"value\":}\n");
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setChunkSize(100);
+		decoder.decodeList(new ByteArrayInputStream(input.toString().getBytes("UTF-8")));
+	}
+	
+	/**
+	 * Test that the elements of one large array are decoded in parallel in
+	 * the order of the array, also when strings contain brackets, commas,
+	 * quotes and escapes
+	 */
+	@Test public final void testArray() throws IOException {
+		List<PlainObjectWrapper> records = arrayRecords();
+		String input = array(records);
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setThreads(4);
+		decoder.setChunkSize(100);
+		assertEquals(records, decoder.decodeArray(new ByteArrayInputStream(input.getBytes("UTF-8"))));
+		
+		byte[] single = "[{ value : 'a]' }]".getBytes("UTF-8");
+		assertEquals("a]", decoder.decodeArray(single, 0, single.length).get(0).value);
+		byte[] empty = " [ ] ".getBytes("UTF-8");
+		assertTrue(decoder.decodeArray(empty, 0, empty.length).isEmpty());
+	}
+	
+	private static List<PlainObjectWrapper> arrayRecords() {
+		List<PlainObjectWrapper> records = records(10000);
+		records.get(5).value = "[{,}]\"\\";
+		records.get(6).value = "'\\";
+		records.set(7, null);
+		return records;
+	}
+	
+	private static String array(List<PlainObjectWrapper> records) {
+		StringBuilder input = new StringBuilder("\ufeff [");
+		for(int i = 0; i < records.size(); i++) {
+			if(i > 0) input.append(i % 2 == 0 ? ",\n" : ",");
+			input.append(records.get(i) == null ? "null" : Encoder.encode(records.get(i)));
+		}
+		return input.append("] ").toString();
+	}
+	
+	/**
+	 * Test the decoding of an array from a memory mapped file, with
+	 * windows that split strings, escapes and the byte order mark
+	 */
+	@Test public final void testArrayFile() throws IOException {
+		List<PlainObjectWrapper> records = arrayRecords();
+		Path path = Files.createTempFile("array", ".json");
+		try {
+			Files.write(path, array(records).getBytes("UTF-8"));
+			ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+			decoder.setThreads(4);
+			for(long windowSize : new long[] { 1, 2, 16, 17, 1000, JSONReader.DEFAULT_WINDOW_SIZE }) {
+				decoder.setWindowSize(windowSize);
+				assertEquals(records, decoder.decodeArray(path));
+			}
+			
+			decoder.setWindowSize(3);
+			Files.write(path, "[{ value : 'a]' }]".getBytes("UTF-8"));
+			assertEquals("a]", decoder.decodeArray(path).get(0).value);
+			Files.write(path, " [ ] ".getBytes("UTF-8"));
+			assertTrue(decoder.decodeArray(path).isEmpty());
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+	/**
+	 * Test that malformed arrays are reported
+	 */
+	@Test public final void testArrayMalformed() throws IOException {
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		String[] inputs = { "{}", "[{}", "[{}] []", "[{\"value\":\"a]}", "[{}]}", "[{},]", "[{\"value\":}]" };
+		for(String input : inputs) {
+			byte[] b = input.getBytes("UTF-8");
+			try {
+				decoder.decodeArray(b, 0, b.length);
+				fail(input);
+			} catch ( JSONException e ) {
+				// Expected
+			}
+		}
+	}
+	
+	/**
+	 * Test that malformed arrays in a file are reported
+	 */
+	@Test public final void testArrayFileMalformed() throws IOException {
+		ParallelDecoder<PlainObjectWrapper> decoder = new ParallelDecoder<PlainObjectWrapper>(PlainObjectWrapper.class);
+		decoder.setWindowSize(2);
+		String[] inputs = { "", "{}", "[{}", "[{}] []", "[{\"value\":\"a]}", "[{}]}", "[{},]", "[{\"value\":}]" };
+		Path path = Files.createTempFile("array", ".json");
+		try {
+			for(String input : inputs) {
+				Files.write(path, input.getBytes("UTF-8"));
+				try {
+					decoder.decodeArray(path);
+					fail(input);
+				} catch ( JSONException e ) {
+					// Expected
+				}
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+}
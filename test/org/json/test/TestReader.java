@@ -0,0 +1,313 @@
+package org.json.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.Decoder;
+import org.json.JSONException;
+import org.json.JSONReader;
+import org.json.JSONToken;
+import org.json.NameTable;
+import org.json.test.TestWrappers.PlainObjectWrapper;
+import org.junit.Test;
+
+public class TestReader {
+
+	/**
+	 * This case tests if all token types are reported in document order
+	 */
+	@Test public final void testTokens() {
+		String input = "{\"a\" : \"test\", b : [1, -2.5, true, null], c : {}}";
+		JSONReader reader = new JSONReader(input);
+		assertEquals(JSONToken.BEGIN_OBJECT, reader.peek());
+		reader.beginObject();
+		assertEquals(JSONToken.NAME, reader.peek());
+		assertEquals("a", reader.nextName());
+		assertEquals(JSONToken.STRING, reader.peek());
+		assertEquals("test", reader.nextString());
+		assertEquals("b", reader.nextName());
+		reader.beginArray();
+		assertEquals(JSONToken.NUMBER, reader.peek());
+		assertEquals(1, reader.nextInt());
+		assertEquals(JSONToken.NUMBER, reader.peek());
+		assertEquals(-2.5, reader.nextDouble(), 0);
+		assertEquals(JSONToken.BOOLEAN, reader.peek());
+		assertTrue(reader.nextBoolean());
+		assertEquals(JSONToken.NULL, reader.peek());
+		reader.nextNull();
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertEquals("c", reader.nextName());
+		reader.beginObject();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+		reader.endObject();
+		assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+	}
+
+	/**
+	 * This case tests if nested values can be skipped
+	 */
+	@Test public final void testSkipValue() {
+		String input = "{ skipped : { a : [ { b : \"}]\" } ], c : 'x' }, id : 12345678901 }";
+		JSONReader reader = new JSONReader(input);
+		reader.beginObject();
+		assertEquals("skipped", reader.nextName());
+		reader.skipValue();
+		assertEquals("id", reader.nextName());
+		assertEquals(12345678901L, reader.nextLong());
+		reader.endObject();
+		assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+	}
+
+	/**
+	 * This case tests if a name and its value are skipped together
+	 */
+	@Test public final void testSkipName() {
+		JSONReader reader = new JSONReader("{ a : [1, 2], b : 3 }");
+		reader.beginObject();
+		reader.skipValue();
+		assertEquals("b", reader.nextName());
+		assertEquals(3, reader.nextInt());
+	}
+
+	/**
+	 * This case tests if only a part of a document can be bound by the decoder
+	 */
+	@Test public final void testDecodeFromReader() {
+		String input = "{ count : 2, items : ["
+				+ "{\"value\" : \"test\", value1:2342342, value2:23.2342352353, value3:true}, "
+				+ "{\"value\" : \"test2\"}"
+			+ "] }";
+		JSONReader reader = new JSONReader(input);
+		reader.beginObject();
+		assertEquals("count", reader.nextName());
+		reader.skipValue();
+		assertEquals("items", reader.nextName());
+		reader.beginArray();
+		PlainObjectWrapper first = Decoder.decode(PlainObjectWrapper.class, reader);
+		PlainObjectWrapper second = Decoder.decode(PlainObjectWrapper.class, reader);
+		reader.endArray();
+		reader.endObject();
+
+		PlainObjectWrapper expected = new PlainObjectWrapper();
+		expected.value = "test";
+		expected.value1  = 2342342;
+		expected.value2 = 23.2342352353;
+		expected.value3 = true;
+		assertEquals(expected, first);
+		assertEquals("test2", second.value);
+	}
+
+	/**
+	 * Values in an array should be separated by commas
+	 */
+	@Test(expected=JSONException.class) public final void testMissingComma() {
+		JSONReader reader = new JSONReader("[1 2]");
+		reader.beginArray();
+		reader.nextInt();
+		reader.nextInt();
+	}
+
+	/**
+	 * Reading a value of the wrong type should throw an exception
+	 */
+	@Test(expected=JSONException.class) public final void testUnexpectedToken() {
+		JSONReader reader = new JSONReader("[1]");
+		reader.beginObject();
+	}
+
+	/**
+	 * A document can only contain one value
+	 */
+	@Test(expected=JSONException.class) public final void testTrailingInput() {
+		JSONReader reader = new JSONReader("{} {}");
+		reader.beginObject();
+		reader.endObject();
+		reader.peek();
+	}
+
+	/**
+	 * This case tests if multi-byte UTF-8 sequences are decoded from bytes
+	 * and streams, and if only the given range of a byte array is read
+	 */
+	@Test public final void testUTF8Bytes() throws UnsupportedEncodingException {
+		String value = "na\u00efve \u4e2d\u6587 \ud83d\ude00";
+		String input = "xx{ \"caf\u00e9\" : \"" + value + "\" }yy";
+		byte[] bytes = input.getBytes("UTF-8");
+		int off = 2, len = bytes.length - 4;
+
+		JSONReader reader = new JSONReader(bytes, off, len);
+		reader.beginObject();
+		assertEquals("caf\u00e9", reader.nextName());
+		assertEquals(value, reader.nextString());
+		reader.endObject();
+		assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+
+		reader = new JSONReader(new ByteArrayInputStream(bytes, off, len), 1);
+		reader.beginObject();
+		assertEquals("caf\u00e9", reader.nextName());
+		assertEquals(value, reader.nextString());
+		reader.endObject();
+		assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+	}
+
+	/**
+	 * This case tests if integers are parsed up to the bounds of their type,
+	 * and if numbers out of range or malformed numbers are rejected
+	 */
+	@Test public final void testIntegers() {
+		JSONReader reader = new JSONReader("[0, -2147483648, 2147483647, \"42\", -9223372036854775808, 9223372036854775807, 2147483648, 1.5, -]");
+		reader.beginArray();
+		assertEquals(0, reader.nextInt());
+		assertEquals(Integer.MIN_VALUE, reader.nextInt());
+		assertEquals(Integer.MAX_VALUE, reader.nextInt());
+		assertEquals(42, reader.nextInt());
+		assertEquals(Long.MIN_VALUE, reader.nextLong());
+		assertEquals(Long.MAX_VALUE, reader.nextLong());
+		for(int i = 0; i < 3; i++) {
+			try {
+				reader.nextInt();
+				fail("Expected a JSONException");
+			} catch ( JSONException e ) {
+				// Out of range or malformed
+			}
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * This case tests if escape sequences are decoded, including unicode
+	 * escapes and surrogate pairs, also when they span multiple blocks of
+	 * the input
+	 */
+	@Test public final void testEscapes() throws UnsupportedEncodingException {
+		String input = "[\"a\\nb\\tc\\r\\b\\f\\u0041\\u00E9\\u4e2d\\ud83d\\ude00\\\"\\\\\\/\\}\", \"plain\"]";
+		String expected = "a\nb\tc\r\b\fA\u00e9\u4e2d\ud83d\ude00\"\\/}";
+		byte[] bytes = input.getBytes("UTF-8");
+		// Buffers are at least 16 bytes
+		for(int size = 16; size <= bytes.length + 1; size++) {
+			JSONReader reader = new JSONReader(new ByteArrayInputStream(bytes), size);
+			reader.beginArray();
+			assertEquals(expected, reader.nextString());
+			assertEquals("plain", reader.nextString());
+			reader.endArray();
+		}
+	}
+
+	/**
+	 * This case tests if a literal at the end of a stream or Reader is read
+	 * completely, when it is not at the start of the buffer
+	 */
+	@Test public final void testLiteralAtEndOfInput() throws UnsupportedEncodingException {
+		for(JSONReader reader : readers("   42", 16)) {
+			assertEquals(42, reader.nextInt());
+			assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+		}
+		String input = "   7 true\n   null\n      -12345";
+		for(int size = 16; size <= input.length() + 1; size++) {
+			for(JSONReader reader : readers(input, size)) {
+				reader.setMultipleDocuments(true);
+				assertEquals(7, reader.nextInt());
+				assertTrue(reader.nextBoolean());
+				reader.nextNull();
+				assertEquals(-12345L, reader.nextLong());
+				assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+			}
+		}
+	}
+	
+	/**
+	 * @return a reader for the input as UTF-8 stream, and one for the input
+	 *         as Reader
+	 */
+	private static JSONReader[] readers(String input, int size) throws UnsupportedEncodingException {
+		return new JSONReader[] {
+			new JSONReader(new ByteArrayInputStream(input.getBytes("UTF-8")), size),
+			new JSONReader(new StringReader(input), size)
+		};
+	}
+
+	/**
+	 * This case tests if a memory mapped file is read across the boundaries
+	 * of the mapped windows, with buffers smaller and larger than a window
+	 */
+	@Test public final void testMappedFile() throws IOException {
+		String input = "[\"a string that spans windows\", 12345678901, true, { name : \"\u00e9\u4e2d\\n\" }, null]";
+		byte[] bytes = input.getBytes("UTF-8");
+		Path path = Files.createTempFile("test", ".json");
+		try {
+			Files.write(path, bytes);
+			for(int window = 16; window <= bytes.length + 1; window++) {
+				for(int size : new int[] { 16, 64 }) {
+					JSONReader reader = new JSONReader(path, size, window);
+					try {
+						reader.beginArray();
+						assertEquals("a string that spans windows", reader.nextString());
+						assertEquals(12345678901L, reader.nextLong());
+						assertTrue(reader.nextBoolean());
+						reader.beginObject();
+						assertEquals("name", reader.nextName());
+						assertEquals("\u00e9\u4e2d\n", reader.nextString());
+						reader.endObject();
+						reader.nextNull();
+						reader.endArray();
+						assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+					} finally {
+						reader.close();
+					}
+				}
+			}
+			
+			Files.write(path, new byte[0]);
+			JSONReader reader = new JSONReader(path);
+			try {
+				assertEquals(JSONToken.END_DOCUMENT, reader.peek());
+			} finally {
+				reader.close();
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+	/**
+	 * Unicode escapes should consist of four hexadecimal digits
+	 */
+	@Test(expected=JSONException.class) public final void testInvalidEscape() {
+		JSONReader reader = new JSONReader("[\"\\u00g0\"]");
+		reader.beginArray();
+		reader.nextString();
+	}
+
+	/**
+	 * Names should be looked up in a name table, with or without quotes,
+	 * escapes or an expected name
+	 */
+	@Test public final void testNameTable() {
+		NameTable names = new NameTable("id", "name", "a\"b");
+		JSONReader reader = new JSONReader("{\"id\":1, name:2, \"n\\u0061me\":3, \"a\\\"b\":4, \"other\":5}");
+		reader.beginObject();
+		assertEquals(0, reader.nextName(names, 0));
+		reader.skipValue();
+		assertEquals(1, reader.nextName(names, 0));
+		reader.skipValue();
+		assertEquals(1, reader.nextName(names, 1));
+		reader.skipValue();
+		assertEquals(2, reader.nextName(names, 7));
+		reader.skipValue();
+		assertEquals(-1, reader.nextName(names));
+		reader.skipValue();
+		reader.endObject();
+		assertEquals(3, names.size());
+		assertEquals(1, names.find("name"));
+	}
+}
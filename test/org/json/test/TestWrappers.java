@@ -559,4 +559,90 @@ public class TestWrappers {
 		
 	}
 	
+	
+	public static class ObjectWithAccessors implements JSONSerializable {
+		private String name;
+		private long count;
+		private boolean active;
+		private String alias;
+		
+		@JSONAttribute public String getName() {
+			return name;
+		}
+		
+		@JSONAttribute public void setName(String name) {
+			this.name = name;
+		}
+		
+		@JSONAttribute public long getCount() {
+			return count;
+		}
+		
+		@JSONAttribute(required=true) public void setCount(long count) {
+			this.count = count;
+		}
+		
+		@JSONAttribute public boolean isActive() {
+			return active;
+		}
+		
+		@JSONAttribute public void setActive(boolean active) {
+			this.active = active;
+		}
+		
+		@JSONAttribute(name="nickname") void alias(String alias) {
+			this.alias = alias;
+		}
+		
+		@JSONAttribute public int getLength() {
+			return name == null ? 0 : name.length();
+		}
+		
+		public String getAlias() {
+			return alias;
+		}
+		
+	}
+	
+	public static class ObjectWithCodec implements JSONSerializable {
+		@JSONAttribute public String value;
+	}
+	
+	/**
+	 * The {@code CodecProcessor} does not generate codecs for generic
+	 * classes, so this class is decoded and encoded through reflection or a
+	 * codec generated at runtime. The accessors record the class that calls
+	 * them.
+	 */
+	public static class GenericObject<T> implements JSONSerializable {
+		@JSONAttribute public String name;
+		@JSONAttribute public int count;
+		@JSONAttribute public long id;
+		@JSONAttribute public float weight;
+		@JSONAttribute public double ratio;
+		@JSONAttribute public boolean active;
+		@JSONAttribute public PlainObjectWrapper inner;
+		private String alias;
+		
+		public String getterCaller;
+		public String setterCaller;
+		
+		@JSONAttribute public String getAlias() {
+			getterCaller = caller();
+			return alias;
+		}
+		
+		@JSONAttribute public void setAlias(String alias) {
+			setterCaller = caller();
+			this.alias = alias;
+		}
+		
+		/**
+		 * @return the class that called the accessor
+		 */
+		private static String caller() {
+			return Thread.currentThread().getStackTrace()[3].getClassName();
+		}
+	}
+	
 }
@@ -0,0 +1,69 @@
+package org.json.test;
+/**
+ * Copyright 2014 Jan-Willem Gmelig Meyling. Based on the Simple Framework
+ * written by Niall Gallagher and the JSON specification described by
+ * Douglas Crockford.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.IOException;
+
+import org.json.JSONCodec;
+import org.json.JSONException;
+import org.json.JSONReader;
+import org.json.JSONWriter;
+import org.json.test.TestWrappers.ObjectWithCodec;
+
+/**
+ * Hand written codec for {@link ObjectWithCodec}, which writes the value in
+ * upper case to show that it is used instead of reflection
+ * 
+ * @author Jan-Willem Gmelig Meyling
+ */
+public final class TestWrappers_ObjectWithCodec_JSONCodec extends JSONCodec<ObjectWithCodec> {
+
+	public TestWrappers_ObjectWithCodec_JSONCodec() {
+		super(ObjectWithCodec.class);
+	}
+
+	@Override
+	public ObjectWithCodec read(JSONReader reader) throws JSONException {
+		ObjectWithCodec obj = new ObjectWithCodec();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("value")) {
+				obj.value = nextNull(reader) ? null : reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return obj;
+	}
+
+	@Override
+	public void write(JSONWriter writer, ObjectWithCodec value) throws JSONException, IOException {
+		writer.beginObject();
+		writer.name("value").value(value.value == null ? null : value.value.toUpperCase());
+		writer.endObject();
+	}
+
+}
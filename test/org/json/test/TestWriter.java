@@ -0,0 +1,203 @@
+package org.json.test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.json.Encoder;
+import org.json.JSONException;
+import org.json.JSONReader;
+import org.json.JSONWriter;
+import org.json.NameTable;
+import org.json.test.TestWrappers.PlainObjectWrapper;
+import org.junit.Test;
+
+public class TestWriter {
+
+	/**
+	 * This case tests if all value types are written in document order
+	 */
+	@Test public final void testValues() throws IOException {
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginObject();
+		writer.name("a").value("te\"st");
+		writer.name("b").beginArray();
+		writer.value(1).value(-2.5).value(true).nullValue();
+		writer.endArray();
+		writer.name("c").beginObject().endObject();
+		writer.endObject();
+		writer.close();
+		assertEquals("{\"a\":\"te\\\"st\",\"b\":[1,-2.5,true,null],\"c\":{}}", out.toString());
+	}
+
+	/**
+	 * This case tests if objects can be encoded as part of a larger document
+	 */
+	@Test public final void testEnvelope() throws IOException {
+		PlainObjectWrapper object = new PlainObjectWrapper();
+		object.value = "test";
+		object.value1  = 2342342;
+		object.value2 = 23.2342352353;
+		object.value3 = true;
+
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginObject();
+		writer.name("count").value(2);
+		writer.name("items").beginArray();
+		Encoder.encode(writer, object);
+		Encoder.encode(writer, object);
+		writer.endArray();
+		writer.name("done").value(true);
+		writer.endObject();
+		writer.flush();
+
+		String encoded = "{\"value\":\"test\",\"value1\":2342342,\"value2\":23.2342352353,\"value3\":true}";
+		assertEquals("{\"count\":2,\"items\":[" + encoded + "," + encoded + "],\"done\":true}", out.toString());
+	}
+
+	/**
+	 * This case tests if nested structures are indented when pretty printing
+	 */
+	@Test public final void testIndent() throws IOException {
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out, 2);
+		writer.beginObject();
+		writer.name("a").value(1);
+		writer.name("b").beginObject().name("c").beginArray().value(1).value(2).endArray().endObject();
+		writer.endObject();
+		assertEquals("{\n  \"a\" : 1,\n  \"b\" : {\n    \"c\" : [ 1, 2]\n  }\n}", out.toString());
+	}
+
+	/**
+	 * Values in an object should be preceded by a name
+	 */
+	@Test(expected=JSONException.class) public final void testValueWithoutName() throws IOException {
+		new JSONWriter(new StringWriter()).beginObject().value(1);
+	}
+
+	/**
+	 * Names can only be written in objects
+	 */
+	@Test(expected=JSONException.class) public final void testNameInArray() throws IOException {
+		new JSONWriter(new StringWriter()).beginArray().name("a");
+	}
+
+	/**
+	 * This case tests if non ASCII characters are written as UTF-8, also when
+	 * the output buffer is flushed halfway a document
+	 */
+	@Test public final void testOutputStream() throws IOException {
+		String value = "na\u00efve \u4e2d\u6587 \ud83d\ude00";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONWriter writer = new JSONWriter(out, 0, 16);
+		writer.beginArray();
+		for(int i = 0; i < 10; i++)
+			writer.value(value);
+		writer.endArray();
+		writer.flush();
+
+		StringWriter expected = new StringWriter();
+		writer = new JSONWriter(expected);
+		writer.beginArray();
+		for(int i = 0; i < 10; i++)
+			writer.value(value);
+		writer.endArray();
+		writer.close();
+		assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+	}
+
+	/**
+	 * This case tests if objects are encoded to the same bytes through every
+	 * output path
+	 */
+	@Test public final void testEncodeToBytes() throws IOException {
+		PlainObjectWrapper object = new PlainObjectWrapper();
+		object.value = "t\u00e9st";
+		object.value1  = 2342342;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Encoder.encode(out, object);
+		byte[] bytes = Encoder.encodeToBytes(object);
+		assertArrayEquals(out.toByteArray(), bytes);
+		assertEquals(Encoder.encode(object), new String(bytes, "UTF-8"));
+	}
+
+	/**
+	 * This case tests if integers are written with the same digits as
+	 * {@code Long.toString}, including the bounds and numbers of every length
+	 */
+	@Test public final void testIntegers() throws IOException {
+		Random random = new Random(42);
+		long[] values = new long[1000];
+		values[0] = Long.MIN_VALUE;
+		values[1] = Long.MAX_VALUE;
+		values[2] = Integer.MIN_VALUE;
+		values[3] = Integer.MAX_VALUE;
+		values[4] = Integer.MAX_VALUE + 1L;
+		for(int i = 5; i < values.length; i++)
+			values[i] = random.nextLong() >> random.nextInt(64);
+		StringWriter out = new StringWriter();
+		StringBuilder expected = new StringBuilder("[");
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginArray();
+		for(long value : values) {
+			writer.value(value);
+			expected.append(value).append(',');
+		}
+		writer.value((Number) Integer.valueOf(-12));
+		writer.endArray();
+		writer.close();
+		assertEquals(expected.append("-12]").toString(), out.toString());
+	}
+
+	/**
+	 * This case tests if special characters are escaped, if other characters
+	 * are written as UTF-8, also in strings that are larger than the buffer,
+	 * and if the reader reads back the same strings
+	 */
+	@Test public final void testEscapes() throws IOException {
+		StringWriter escaped = new StringWriter();
+		new JSONWriter(escaped).value("a\"b\\c\nd\te\r\b\f\u0001\u0085\u2028\u00e9\ud83d\ude00").close();
+		assertEquals("\"a\\\"b\\\\c\\nd\\te\\r\\b\\f\\u0001\\u0085\\u2028\u00e9\ud83d\ude00\"", escaped.toString());
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 200; i++) sb.append("abcdefghij\"\n\u00e9\u4e2d");
+		String value = sb.toString();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONWriter writer = new JSONWriter(out, 0, 16);
+		writer.beginArray().value(value).endArray();
+		writer.close();
+		JSONReader reader = new JSONReader(out.toByteArray());
+		reader.beginArray();
+		assertEquals(value, reader.nextString());
+		reader.endArray();
+	}
+	
+	/**
+	 * Names from a name table should be written escaped, with the separator
+	 * for the indentation of the writer
+	 */
+	@Test public final void testNameTable() throws IOException {
+		NameTable names = new NameTable("id", "a\"b");
+		StringWriter out = new StringWriter();
+		JSONWriter writer = new JSONWriter(out);
+		writer.beginObject();
+		writer.name(names, 1).value(1);
+		writer.name(names, 0).value(2);
+		writer.endObject();
+		writer.flush();
+		assertEquals("{\"a\\\"b\":1,\"id\":2}", out.toString());
+		
+		out = new StringWriter();
+		writer = new JSONWriter(out, 2);
+		writer.beginObject();
+		writer.name(names, 0).value(2);
+		writer.endObject();
+		writer.flush();
+		assertEquals("{\n  \"id\" : 2\n}", out.toString());
+	}
+}